@@ -0,0 +1,99 @@
+package cn.afternode.commons.benchmarks;
+
+import cn.afternode.commons.binary.BinarySerialize;
+import cn.afternode.commons.binary.BinarySerializer;
+import cn.afternode.commons.binary.WrappedByteBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trips of BinarySerializer with objects of different sizes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BinarySerializerBenchmark {
+    @BinarySerialize
+    public static class Player {
+        public UUID id;
+        public String name;
+        public int level;
+        public long coins;
+        public double balance;
+        public boolean online;
+        public List<String> tags;
+        public Map<String, Integer> stats;
+    }
+
+    /**
+     * Number of tags and stats entries
+     */
+    @Param({"0", "16", "256"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    private BinarySerializer serializer;
+    private Player player;
+    private WrappedByteBuffer serialized;
+
+    @Setup
+    public void setup() {
+        serializer = new BinarySerializer();
+        serializer.setCompact(compact);
+
+        player = new Player();
+        player.id = UUID.randomUUID();
+        player.name = "Player_" + size;
+        player.level = 42;
+        player.coins = 123456789L;
+        player.balance = 1024.5;
+        player.online = true;
+        player.tags = new ArrayList<>();
+        player.stats = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            player.tags.add("tag-" + i);
+            player.stats.put("stat-" + i, i * 7);
+        }
+
+        serialized = serializer.serialize(player, 256);
+    }
+
+    @Benchmark
+    public int serialize() {
+        WrappedByteBuffer bb = serializer.serialize(player);
+        int len = bb.writeOffset();
+        bb.release();
+        return len;
+    }
+
+    @Benchmark
+    public Player deserialize() {
+        serialized.resetReader();
+        return serializer.deserialize(Player.class, serialized);
+    }
+
+    @Benchmark
+    public Player roundTrip() {
+        WrappedByteBuffer bb = serializer.serialize(player);
+        try {
+            return serializer.deserialize(Player.class, bb);
+        } finally {
+            bb.release();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package cn.afternode.commons.benchmarks;
+
+import cn.afternode.commons.localizations.ILocalizations;
+import cn.afternode.commons.localizations.LazyLoadLanguageFile;
+import cn.afternode.commons.localizations.MultiLanguageLocalization;
+import cn.afternode.commons.localizations.SimpleLocalization;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ILocalizations.get of each implementation, with and without placeholders
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LocalizationBenchmark {
+    static final String PROPERTIES = """
+            plain=Welcome to the server
+            greeting=Hello %player%, you have %coins% coins in %world%
+            """;
+
+    @Param({"simple", "multi", "lazy"})
+    public String implementation;
+
+    private ILocalizations localizations;
+    private final Map<String, Object> placeholders = Map.of("player", "Steve", "coins", 1024, "world", "overworld");
+
+    @Setup
+    public void setup() throws IOException {
+        localizations = switch (implementation) {
+            case "simple" -> new SimpleLocalization(PROPERTIES);
+            case "multi" -> new MultiLanguageLocalization("bench", LocalizationBenchmark.class.getClassLoader(), "en");
+            case "lazy" -> new LazyLoadLanguageFile(key -> new StringReader(PROPERTIES));
+            default -> throw new IllegalArgumentException(implementation);
+        };
+    }
+
+    @Benchmark
+    public String get() {
+        return localizations.get("plain");
+    }
+
+    @Benchmark
+    public String getMissing() {
+        return localizations.get("missing.key");
+    }
+
+    @Benchmark
+    public String getWithPlaceholders() {
+        return localizations.get("greeting", placeholders);
+    }
+}
@@ -0,0 +1,73 @@
+package cn.afternode.commons.benchmarks;
+
+import cn.afternode.commons.bukkit.message.MessageBuilder;
+import cn.afternode.commons.bukkit.message.TabBuilder;
+import cn.afternode.commons.localizations.ILocalizations;
+import cn.afternode.commons.localizations.SimpleLocalization;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build costs of MessageBuilder and TabBuilder, without server or sender
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageBuilderBenchmark {
+    private static final String[] ITEMS = {"reload", "region", "remove", "rename", "help", "info", "list", "teleport", "toggle", "version"};
+
+    private ILocalizations localizations;
+    private final Map<String, Object> placeholders = Map.of("player", "Steve", "coins", 1024, "world", "overworld");
+
+    @Setup
+    public void setup() throws IOException {
+        localizations = new SimpleLocalization(LocalizationBenchmark.PROPERTIES);
+    }
+
+    @Benchmark
+    public TextComponent text() {
+        return new MessageBuilder(null, Component.text("[Server] "), null)
+                .text("Hello ")
+                .text("world", Color.ORANGE)
+                .line()
+                .text("Second line")
+                .build();
+    }
+
+    @Benchmark
+    public TextComponent localize() {
+        return new MessageBuilder(localizations)
+                .localize("greeting", placeholders)
+                .line()
+                .localize("plain", Map.of())
+                .build();
+    }
+
+    @Benchmark
+    public TextComponent mini() {
+        return new MessageBuilder()
+                .mini("<green>Hello <bold>world</bold></green>, <gray>welcome back")
+                .build();
+    }
+
+    @Benchmark
+    public List<String> tab() {
+        return new TabBuilder(null)
+                .add("re", ITEMS)
+                .add("t", ITEMS)
+                .build();
+    }
+}
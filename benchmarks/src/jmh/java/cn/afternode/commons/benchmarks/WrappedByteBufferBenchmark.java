@@ -0,0 +1,91 @@
+package cn.afternode.commons.benchmarks;
+
+import cn.afternode.commons.binary.WrappedByteBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Primitive and UTF throughput of WrappedByteBuffer, on heap and direct memory
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WrappedByteBufferBenchmark {
+    private static final int COUNT = 1024;
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    /**
+     * Content of UTF benchmarks
+     */
+    @Param({"ascii", "mixed"})
+    public String text;
+
+    private WrappedByteBuffer bb;
+    private String string;
+
+    @Setup
+    public void setup() {
+        bb = direct ? WrappedByteBuffer.direct(COUNT * 64) : new WrappedByteBuffer(COUNT * 64);
+        string = text.equals("ascii") ? "The quick brown fox jumps over" : "快速的棕色狐狸 jumps over ü";
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void writeInt() {
+        bb.resetWriter();
+        for (int i = 0; i < COUNT; i++) bb.writeInt(i);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void readInt(Blackhole bh) {
+        bb.resetWriter();
+        for (int i = 0; i < COUNT; i++) bb.writeInt(i);
+        bb.resetReader();
+        for (int i = 0; i < COUNT; i++) bh.consume(bb.readInt());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void writeLong() {
+        bb.resetWriter();
+        for (int i = 0; i < COUNT; i++) bb.writeLong(i * 31L);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void varInt(Blackhole bh) {
+        bb.resetWriter();
+        for (int i = 0; i < COUNT; i++) bb.writeVarInt(i * 131);
+        bb.resetReader();
+        for (int i = 0; i < COUNT; i++) bh.consume(bb.readVarInt());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void writeUtf() {
+        bb.resetWriter();
+        for (int i = 0; i < COUNT; i++) bb.writeUtf(string);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void readUtf(Blackhole bh) {
+        bb.resetWriter();
+        for (int i = 0; i < COUNT; i++) bb.writeUtf(string);
+        bb.resetReader();
+        for (int i = 0; i < COUNT; i++) bh.consume(bb.readUtf());
+    }
+}
@@ -0,0 +1,301 @@
+package cn.afternode.commons.binary.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Generate {@code XxxBinaryCodec} for every {@code @BinarySerialize} type and register them in
+ * {@code META-INF/services/cn.afternode.commons.binary.BinaryCodec}
+ * <br>
+ * Types without a visible no-args constructor are skipped and keep using reflection.
+ * Private and final fields are read through {@code VarHandle}s from {@code MethodHandles.privateLookupIn},
+ * final fields are written through setters of accessible fields, as VarHandles of final fields are read-only
+ */
+public class BinarySerializeProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "cn.afternode.commons.binary.BinarySerialize";
+    static final String EXCLUDE = "cn.afternode.commons.binary.BinarySerialize.Exclude";
+    static final String CODEC = "cn.afternode.commons.binary.BinaryCodec";
+
+    private static final Map<TypeKind, String> PRIMITIVES = new LinkedHashMap<>();
+
+    static {
+        PRIMITIVES.put(TypeKind.INT, "int");
+        PRIMITIVES.put(TypeKind.SHORT, "short");
+        PRIMITIVES.put(TypeKind.LONG, "long");
+        PRIMITIVES.put(TypeKind.BYTE, "byte");
+        PRIMITIVES.put(TypeKind.BOOLEAN, "boolean");
+        PRIMITIVES.put(TypeKind.CHAR, "char");
+        PRIMITIVES.put(TypeKind.FLOAT, "float");
+        PRIMITIVES.put(TypeKind.DOUBLE, "double");
+    }
+
+    private final List<String> generated = new ArrayList<>();
+    private final List<Element> origins = new ArrayList<>();
+
+    private Filer filer;
+    private Messager messager;
+    private Types types;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment env) {
+        super.init(env);
+        this.filer = env.getFiler();
+        this.messager = env.getMessager();
+        this.types = env.getTypeUtils();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Set.of(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (TypeElement annotation : annotations) {
+            for (TypeElement type : ElementFilter.typesIn(round.getElementsAnnotatedWith(annotation))) {
+                List<VariableElement> fields = eligibleFields(type);
+                if (fields == null) continue;
+
+                try {
+                    generated.add(generate(type, fields));
+                    origins.add(type);
+                } catch (IOException ex) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "Unable to generate codec: " + ex, type);
+                }
+            }
+        }
+
+        if (round.processingOver() && !generated.isEmpty()) writeServices();
+        return false;
+    }
+
+    /**
+     * @return Serialized fields, or null if codec cannot be generated for this type
+     */
+    private List<VariableElement> eligibleFields(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) return skip(type, "not a concrete class");
+        if (hasAnnotation(type, EXCLUDE)) return null;
+
+        for (Element e = type; e instanceof TypeElement t; e = e.getEnclosingElement()) {
+            if (t.getModifiers().contains(Modifier.PRIVATE)) return skip(type, "private type");
+            if (t.getNestingKind() == NestingKind.MEMBER && !t.getModifiers().contains(Modifier.STATIC)) return skip(type, "inner class");
+            if (t.getNestingKind() == NestingKind.LOCAL || t.getNestingKind() == NestingKind.ANONYMOUS) return skip(type, "local class");
+        }
+
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        boolean constructible = constructors.stream()
+                .anyMatch(c -> c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE));
+        if (!constructible) return skip(type, "no visible no-args constructor");
+
+        List<VariableElement> fields = new ArrayList<>();
+        for (VariableElement f : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Set<Modifier> modifiers = f.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || hasAnnotation(f, EXCLUDE)) continue;
+            fields.add(f);
+        }
+        return fields;
+    }
+
+    private List<VariableElement> skip(TypeElement type, String reason) {
+        messager.printMessage(Diagnostic.Kind.NOTE, "No BinaryCodec generated for %s (%s), reflection will be used".formatted(type.getQualifiedName(), reason), type);
+        return null;
+    }
+
+    private static boolean hasAnnotation(Element e, String name) {
+        for (AnnotationMirror m : e.getAnnotationMirrors()) {
+            if (((TypeElement) m.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Binary name of generated codec
+     */
+    private String generate(TypeElement type, List<VariableElement> fields) throws IOException {
+        String pkg = packageOf(type).getQualifiedName().toString();
+        String codecName = codecSimpleName(type);
+        String qualified = pkg.isEmpty() ? codecName : pkg + "." + codecName;
+        String target = types.erasure(type.asType()).toString();
+
+        StringBuilder sb = new StringBuilder();
+        if (!pkg.isEmpty()) sb.append("package ").append(pkg).append(";\n\n");
+        sb.append("// Generated by binary-processor, do not edit\n");
+        sb.append("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+        sb.append("public final class ").append(codecName).append(" implements ").append(CODEC).append('<').append(target).append("> {\n");
+
+        sb.append("    private static final String[] FIELDS = {");
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append('"').append(fields.get(i).getSimpleName()).append('"');
+        }
+        sb.append("};\n\n");
+        handles(sb, target, fields);
+
+        sb.append("    @Override\n    public Class<").append(target).append("> type() {\n        return ").append(target).append(".class;\n    }\n\n");
+        sb.append("    @Override\n    public String[] fields() {\n        return FIELDS.clone();\n    }\n\n");
+        sb.append("    @Override\n    public ").append(target).append(" newInstance() {\n        return new ").append(target).append("();\n    }\n");
+
+        for (Map.Entry<TypeKind, String> e : PRIMITIVES.entrySet()) {
+            String name = Character.toUpperCase(e.getValue().charAt(0)) + e.getValue().substring(1);
+            accessors(sb, target, fields, f -> f.asType().getKind() == e.getKey(), name, e.getValue());
+        }
+        accessors(sb, target, fields, f -> !f.asType().getKind().isPrimitive(), "", "Object");
+
+        sb.append("}\n");
+
+        JavaFileObject file = filer.createSourceFile(qualified, type);
+        try (Writer w = file.openWriter()) {
+            w.write(sb.toString());
+        }
+        return qualified;
+    }
+
+    private void accessors(StringBuilder sb, String target, List<VariableElement> fields, Predicate<VariableElement> filter, String name, String type) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < fields.size(); i++) {
+            if (filter.test(fields.get(i))) indexes.add(i);
+        }
+        // Every accessor is abstract, kinds without fields only reject the index
+        sb.append("\n    @Override\n    public ").append(type).append(" get").append(name).append('(').append(target).append(" obj, int field) {\n");
+        if (indexes.isEmpty()) {
+            sb.append("        throw new IndexOutOfBoundsException(field);\n    }\n");
+        } else {
+            sb.append("        switch (field) {\n");
+            for (int i : indexes) {
+                sb.append("            case ").append(i).append(": return ");
+                if (direct(fields.get(i))) sb.append("obj.").append(fields.get(i).getSimpleName());
+                else {
+                    if (!type.equals("Object")) sb.append('(').append(type).append(") ");
+                    sb.append("FIELD_").append(i).append(".get(obj)");
+                }
+                sb.append(";\n");
+            }
+            sb.append("            default: throw new IndexOutOfBoundsException(field);\n        }\n    }\n");
+        }
+
+        sb.append("\n    @Override\n    public void set").append(name).append('(').append(target).append(" obj, int field, ").append(type).append(" value) {\n");
+        if (indexes.isEmpty()) {
+            sb.append("        throw new IndexOutOfBoundsException(field);\n    }\n");
+        } else {
+            sb.append("        switch (field) {\n");
+            for (int i : indexes) {
+                VariableElement f = fields.get(i);
+                String value = type.equals("Object") ? "(" + types.erasure(f.asType()) + ") value" : "value";
+                sb.append("            case ").append(i).append(": ");
+                if (direct(f)) sb.append("obj.").append(f.getSimpleName()).append(" = ").append(value).append(';');
+                else if (f.getModifiers().contains(Modifier.FINAL))
+                    sb.append("try { SETTER_").append(i).append(".invokeExact(obj, ").append(value).append("); } catch (Throwable th) { throw failure(th); }");
+                else sb.append("FIELD_").append(i).append(".set(obj, ").append(value).append(");");
+                sb.append(" return;\n");
+            }
+            sb.append("            default: throw new IndexOutOfBoundsException(field);\n        }\n    }\n");
+        }
+    }
+
+    /**
+     * @return If field can be accessed by generated code in the same package
+     */
+    private static boolean direct(VariableElement f) {
+        // Also excludes final fields with constant initializers, reads of them are inlined by javac
+        return !f.getModifiers().contains(Modifier.PRIVATE) && !f.getModifiers().contains(Modifier.FINAL);
+    }
+
+    /**
+     * Emit {@code FIELD_i} VarHandles and {@code SETTER_i} MethodHandles for fields not accessible directly
+     */
+    private void handles(StringBuilder sb, String target, List<VariableElement> fields) {
+        if (fields.stream().allMatch(BinarySerializeProcessor::direct)) return;
+        boolean finals = false;
+
+        sb.append("    private static final java.lang.invoke.MethodHandles.Lookup LOOKUP = lookup();\n");
+        for (int i = 0; i < fields.size(); i++) {
+            VariableElement f = fields.get(i);
+            if (direct(f)) continue;
+            sb.append("    private static final java.lang.invoke.VarHandle FIELD_").append(i).append(" = field(\"")
+                    .append(f.getSimpleName()).append("\", ").append(types.erasure(f.asType())).append(".class);\n");
+            if (f.getModifiers().contains(Modifier.FINAL)) {
+                finals = true;
+                sb.append("    private static final java.lang.invoke.MethodHandle SETTER_").append(i).append(" = setter(\"").append(f.getSimpleName()).append("\");\n");
+            }
+        }
+
+        sb.append("\n    private static java.lang.invoke.MethodHandles.Lookup lookup() {\n");
+        sb.append("        try {\n            return java.lang.invoke.MethodHandles.privateLookupIn(").append(target).append(".class, java.lang.invoke.MethodHandles.lookup());\n");
+        sb.append("        } catch (IllegalAccessException ex) {\n            throw new ExceptionInInitializerError(ex);\n        }\n    }\n");
+
+        sb.append("\n    private static java.lang.invoke.VarHandle field(String name, Class<?> type) {\n");
+        sb.append("        try {\n            return LOOKUP.findVarHandle(").append(target).append(".class, name, type);\n");
+        sb.append("        } catch (ReflectiveOperationException ex) {\n            throw new ExceptionInInitializerError(ex);\n        }\n    }\n");
+
+        if (finals) {
+            sb.append("\n    private static java.lang.invoke.MethodHandle setter(String name) {\n");
+            sb.append("        try {\n            java.lang.reflect.Field f = ").append(target).append(".class.getDeclaredField(name);\n");
+            sb.append("            f.setAccessible(true);\n            return LOOKUP.unreflectSetter(f);\n");
+            sb.append("        } catch (ReflectiveOperationException ex) {\n            throw new ExceptionInInitializerError(ex);\n        }\n    }\n");
+
+            sb.append("\n    private static RuntimeException failure(Throwable th) {\n");
+            sb.append("        if (th instanceof Error err) throw err;\n");
+            sb.append("        return th instanceof RuntimeException rt ? rt : new IllegalStateException(th);\n    }\n");
+        }
+        sb.append('\n');
+    }
+
+    private void writeServices() {
+        try {
+            var file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + CODEC, origins.toArray(new Element[0]));
+            try (Writer w = file.openWriter()) {
+                for (String name : generated) w.write(name + "\n");
+            }
+        } catch (IOException ex) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Unable to write BinaryCodec services: " + ex);
+        }
+    }
+
+    private static PackageElement packageOf(Element e) {
+        while (!(e instanceof PackageElement)) e = e.getEnclosingElement();
+        return (PackageElement) e;
+    }
+
+    /**
+     * Outer.Inner becomes Outer_InnerBinaryCodec
+     */
+    private static String codecSimpleName(TypeElement type) {
+        StringBuilder sb = new StringBuilder(type.getSimpleName());
+        for (Element e = type.getEnclosingElement(); e instanceof TypeElement t; e = e.getEnclosingElement()) {
+            sb.insert(0, t.getSimpleName() + "_");
+        }
+        return sb.append("BinaryCodec").toString();
+    }
+}
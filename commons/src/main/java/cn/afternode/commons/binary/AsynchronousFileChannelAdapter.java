@@ -0,0 +1,59 @@
+package cn.afternode.commons.binary;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Blocking sequential view of AsynchronousFileChannel starting from a position
+ */
+final class AsynchronousFileChannelAdapter implements ReadableByteChannel, WritableByteChannel {
+    private final AsynchronousFileChannel channel;
+    private long position;
+
+    AsynchronousFileChannelAdapter(AsynchronousFileChannel channel, long position) {
+        this.channel = channel;
+        this.position = position;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int n = await(channel.read(dst, position));
+        if (n > 0) position += n;
+        return n;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int n = await(channel.write(src, position));
+        position += n;
+        return n;
+    }
+
+    private static int await(Future<Integer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException io) throw io;
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,66 @@
+package cn.afternode.commons.binary;
+
+/**
+ * Compile-time generated field accessors of a {@link BinarySerialize} type
+ * <br>
+ * Implementations are generated by the binary-processor annotation processor as {@code XxxBinaryCodec}
+ * and registered through {@link java.util.ServiceLoader}. When present, {@link BinarySerializer} accesses
+ * fields through the codec instead of reflection, the wire format is unchanged.
+ * <br>
+ * Fields are addressed by their index in {@link #fields()}. Primitive fields are accessed by accessors of their own type,
+ * other fields by {@link #get(Object, int)} and {@link #set(Object, int, Object)}.
+ * Accessors throw {@link IndexOutOfBoundsException} for indexes of fields with other types
+ * @param <T> Serialized type
+ */
+public interface BinaryCodec<T> {
+    /**
+     * @return Serialized type
+     */
+    Class<T> type();
+
+    /**
+     * @return Names of accessible fields, indexed by accessor methods
+     */
+    String[] fields();
+
+    /**
+     * @return New instance created with no-args constructor
+     */
+    T newInstance();
+
+    int getInt(T obj, int field);
+
+    void setInt(T obj, int field, int value);
+
+    short getShort(T obj, int field);
+
+    void setShort(T obj, int field, short value);
+
+    long getLong(T obj, int field);
+
+    void setLong(T obj, int field, long value);
+
+    byte getByte(T obj, int field);
+
+    void setByte(T obj, int field, byte value);
+
+    boolean getBoolean(T obj, int field);
+
+    void setBoolean(T obj, int field, boolean value);
+
+    char getChar(T obj, int field);
+
+    void setChar(T obj, int field, char value);
+
+    float getFloat(T obj, int field);
+
+    void setFloat(T obj, int field, float value);
+
+    double getDouble(T obj, int field);
+
+    void setDouble(T obj, int field, double value);
+
+    Object get(T obj, int field);
+
+    void set(T obj, int field, Object value);
+}
@@ -0,0 +1,84 @@
+package cn.afternode.commons.binary;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
+/**
+ * Lookup of generated {@link BinaryCodec} implementations
+ * <br>
+ * Providers are loaded once per ClassLoader through ServiceLoader into a map by serialized type.
+ * Serialized types keep the map of their loader in a ClassValue, loaders only hold it weakly,
+ * so the map is collected together with the types and does not pin their ClassLoader
+ */
+final class BinaryCodecs {
+    private static final System.Logger LOGGER = System.getLogger(BinaryCodecs.class.getName());
+
+    /**
+     * Stop loading after this many broken providers in a row, in case the iterator cannot move past them
+     */
+    private static final int MAX_ERRORS = 64;
+
+    /**
+     * Loaded codecs by loader, guarded by itself
+     */
+    private static final Map<ClassLoader, WeakReference<Map<Class<?>, BinaryCodec<?>>>> LOADERS = new WeakHashMap<>();
+
+    private static final ClassValue<Map<Class<?>, BinaryCodec<?>>> CACHE = new ClassValue<>() {
+        @Override
+        protected Map<Class<?>, BinaryCodec<?>> computeValue(Class<?> type) {
+            ClassLoader loader = type.getClassLoader();
+            return loader == null ? Map.of() : codecs(loader);
+        }
+    };
+
+    private BinaryCodecs() {}
+
+    /**
+     * @param type Serialized type
+     * @return Generated codec, or null if not present
+     */
+    static BinaryCodec<?> find(Class<?> type) {
+        return CACHE.get(type).get(type);
+    }
+
+    private static Map<Class<?>, BinaryCodec<?>> codecs(ClassLoader loader) {
+        synchronized (LOADERS) {
+            WeakReference<Map<Class<?>, BinaryCodec<?>>> ref = LOADERS.get(loader);
+            Map<Class<?>, BinaryCodec<?>> codecs = ref == null ? null : ref.get();
+            if (codecs == null) {
+                codecs = load(loader);
+                LOADERS.put(loader, new WeakReference<>(codecs));
+            }
+            return codecs;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Map<Class<?>, BinaryCodec<?>> load(ClassLoader loader) {
+        Map<Class<?>, BinaryCodec<?>> codecs = new HashMap<>();
+        Iterator<BinaryCodec> providers = ServiceLoader.load(BinaryCodec.class, loader).iterator();
+        int errors = 0;
+        while (true) {
+            BinaryCodec<?> codec;
+            try {
+                if (!providers.hasNext()) break;
+                codec = providers.next();
+            } catch (ServiceConfigurationError err) {
+                // Skip only the broken provider, fields it covers fall back to reflection
+                LOGGER.log(System.Logger.Level.WARNING, "Skipped broken BinaryCodec provider in %s".formatted(loader), err);
+                if (++errors >= MAX_ERRORS) break;
+                continue;
+            }
+            errors = 0;
+            // First provider of a type wins
+            Class<?> type = codec.type();
+            if (type != null) codecs.putIfAbsent(type, codec);
+        }
+        return Map.copyOf(codecs);
+    }
+}
@@ -0,0 +1,213 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.CorruptedFrameException;
+import cn.afternode.commons.serialization.SerializationException;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Framed Deflate compression of serialized payloads
+ * <br>
+ * A frame is a flag byte, varint raw length, then either the raw bytes,
+ * or an integer compressed length and raw Deflate data.
+ * Payloads smaller than threshold, or not getting smaller when compressed, are stored raw.
+ * Deflater and Inflater instances are pooled and reused, safe for concurrent use.
+ * @see BinarySerializer#setCompression(BinaryCompression)
+ */
+public class BinaryCompression {
+    /**
+     * Default threshold, 512 bytes
+     */
+    public static final int DEFAULT_THRESHOLD = 512;
+
+    /**
+     * Default max raw length of a frame, 16 MiB
+     */
+    public static final int DEFAULT_MAX_LENGTH = 1 << 24;
+
+    private static final byte RAW = 0;
+    private static final byte DEFLATE = 1;
+
+    private final int level;
+    private final int threshold;
+    private final int maxLength;
+
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param level Deflate level, 0 to 9
+     * @param threshold Payloads shorter than this are stored raw
+     * @param maxLength Max raw length accepted when decompressing, checked before allocating for the frame
+     * @see Deflater#setLevel(int)
+     */
+    public BinaryCompression(int level, int threshold, int maxLength) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) throw new IllegalArgumentException("Invalid level %s".formatted(level));
+        if (maxLength < 0) throw new IllegalArgumentException("Invalid maxLength %s".formatted(maxLength));
+        this.level = level;
+        this.threshold = threshold;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Create with default max length
+     * @param level Deflate level, 0 to 9
+     * @param threshold Payloads shorter than this are stored raw
+     * @see #DEFAULT_MAX_LENGTH
+     */
+    public BinaryCompression(int level, int threshold) {
+        this(level, threshold, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Create with fastest Deflate level and default threshold
+     * @see #DEFAULT_THRESHOLD
+     */
+    public BinaryCompression() {
+        this(Deflater.BEST_SPEED, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Write readable bytes of source as a frame
+     * <br>
+     * Reader offset of source is moved to its writer offset
+     * @param src Source buffer
+     * @param dst Target buffer
+     */
+    public void compress(WrappedByteBuffer src, WrappedByteBuffer dst) {
+        int len = src.writeOffset() - src.readerOffset();
+        if (len < threshold || !deflate(src, len, dst)) {
+            dst.writeByte(RAW);
+            dst.writeVarInt(len);
+            dst.writeBytes(src);
+        }
+        src.skip(len);
+    }
+
+    /**
+     * @return False if compressed data is not smaller, nothing written in this case
+     */
+    private boolean deflate(WrappedByteBuffer src, int len, WrappedByteBuffer dst) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) deflater = new Deflater(level, true);
+
+        dst.ensureWritable(10);
+        dst.pin();
+        try {
+            int frameOff = dst.writeOffset();
+            dst.writeByte(DEFLATE);
+            dst.writeVarInt(len);
+            int lengthOff = dst.writeOffset();
+            dst.writeInt(0);
+
+            deflater.setInput(src.view(src.readerOffset(), len));
+            deflater.finish();
+            int compressed = 0;
+            while (!deflater.finished()) {
+                if (compressed >= len) {
+                    dst.rewindWriter(frameOff);
+                    return false;
+                }
+                dst.ensureWritable(Math.min(len - compressed, 8192));
+                int n = deflater.deflate(dst.view(dst.writeOffset(), dst.capacity() - dst.writeOffset()));
+                dst.advanceWriter(n);
+                compressed += n;
+            }
+            if (compressed >= len) {
+                dst.rewindWriter(frameOff);
+                return false;
+            }
+            dst.writeInt(compressed, lengthOff);
+            return true;
+        } finally {
+            dst.unpin();
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+    }
+
+    /**
+     * Read a frame written by {@link #compress(WrappedByteBuffer, WrappedByteBuffer)} and write its raw bytes
+     * @param src Source buffer
+     * @param dst Target buffer
+     * @throws CorruptedFrameException Raw or compressed length is negative or exceeds max length
+     * @throws SerializationException Malformed frame
+     */
+    public void decompress(WrappedByteBuffer src, WrappedByteBuffer dst) {
+        byte flag = src.readByte();
+        int len = src.readVarInt();
+        if (len < 0 || len > maxLength) throw new CorruptedFrameException("Bad raw length %s, max length is %s".formatted(len, maxLength));
+
+        if (flag == RAW) {
+            src.checkLength(len);
+            src.ensureReadable(len);
+            dst.ensureWritable(len);
+            dst.view(dst.writeOffset(), len).put(src.view(src.readerOffset(), len));
+            dst.advanceWriter(len);
+            src.skip(len);
+            return;
+        }
+        if (flag != DEFLATE) throw new SerializationException("Unknown compression %s".formatted(flag));
+
+        int compressed = src.readInt();
+        if (compressed < 0 || compressed > maxLength) throw new CorruptedFrameException("Bad compressed length %s, max length is %s".formatted(compressed, maxLength));
+        src.checkLength(compressed);
+        src.ensureReadable(compressed);
+        dst.ensureWritable(len);
+
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) inflater = new Inflater(true);
+        try {
+            inflater.setInput(src.view(src.readerOffset(), compressed));
+            int total = 0;
+            while (total < len && !inflater.finished()) {
+                int n = inflater.inflate(dst.view(dst.writeOffset() + total, len - total));
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                total += n;
+            }
+            if (total != len) throw new SerializationException("Compressed frame has raw length %s, but %s bytes inflated".formatted(len, total));
+            dst.advanceWriter(len);
+            src.skip(compressed);
+        } catch (DataFormatException ex) {
+            throw new SerializationException("Malformed compressed frame", ex);
+        } finally {
+            inflater.reset();
+            inflaters.offer(inflater);
+        }
+    }
+
+    /**
+     * Release native memory of pooled Deflater and Inflater instances
+     */
+    public void clear() {
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) deflater.end();
+        Inflater inflater;
+        while ((inflater = inflaters.poll()) != null) inflater.end();
+    }
+
+    /**
+     * @return Deflate level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return Payloads shorter than this are stored raw
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @return Max raw length accepted when decompressing
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+}
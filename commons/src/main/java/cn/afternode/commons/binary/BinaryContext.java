@@ -0,0 +1,80 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.SerializationException;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * State of a single serialize/deserialize call
+ * <br>
+ * Holds the reference tables used to write shared objects once and back-reference them by index
+ */
+final class BinaryContext {
+    /**
+     * Stateless context used when references are not tracked
+     */
+    static final BinaryContext UNTRACKED = new BinaryContext(false, Map.of());
+
+    final boolean trackReferences;
+    private final Map<Class<?>, NavigableMap<Short, BinaryUpgrade<?>>> upgrades;
+
+    private IdentityHashMap<Object, Integer> written;
+    private ArrayList<Object> read;
+
+    private BinaryContext(boolean trackReferences, Map<Class<?>, NavigableMap<Short, BinaryUpgrade<?>>> upgrades) {
+        this.trackReferences = trackReferences;
+        this.upgrades = upgrades;
+    }
+
+    /**
+     * @param trackReferences Track shared references
+     * @param upgrades Registered upgrades of tagged types
+     * @return New context, or {@link #UNTRACKED} if references are not tracked and no upgrade is registered
+     */
+    static BinaryContext create(boolean trackReferences, Map<Class<?>, NavigableMap<Short, BinaryUpgrade<?>>> upgrades) {
+        if (!trackReferences && upgrades.isEmpty()) return UNTRACKED;
+        return new BinaryContext(trackReferences, upgrades);
+    }
+
+    /**
+     * @param type Tagged type
+     * @return Upgrades by source version, or null if none registered
+     */
+    NavigableMap<Short, BinaryUpgrade<?>> upgrades(Class<?> type) {
+        return upgrades.get(type);
+    }
+
+    /**
+     * Look up index of a written object, registering it if not written yet
+     * @param obj Object to write
+     * @return Index of previously written object, or -1 if it's registered now
+     */
+    int writeReference(Object obj) {
+        if (written == null) written = new IdentityHashMap<>();
+        Integer index = written.putIfAbsent(obj, written.size());
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Register an object being read, must be called before its fields are read
+     * @param obj Created instance
+     */
+    void registerRead(Object obj) {
+        if (read == null) read = new ArrayList<>();
+        read.add(obj);
+    }
+
+    /**
+     * @param index Reference index
+     * @return Previously read object
+     * @throws SerializationException Index out of range
+     */
+    Object readReference(int index) {
+        if (read == null || index < 0 || index >= read.size())
+            throw new SerializationException("Bad back-reference %s".formatted(index));
+        return read.get(index);
+    }
+}
@@ -0,0 +1,148 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.CorruptedFrameException;
+
+import java.util.zip.CRC32C;
+
+/**
+ * Length-delimited, checksummed frames
+ * <br>
+ * A frame is an integer payload length, short version, integer CRC32C of payload, then the payload.
+ * Frames are split from partial reads with {@link BinaryFrameDecoder}
+ */
+public class BinaryFrameCodec {
+    /**
+     * Length of frame header
+     */
+    public static final int HEADER_SIZE = 10;
+
+    /**
+     * Default max payload length, 16 MiB
+     */
+    public static final int DEFAULT_MAX_LENGTH = 1 << 24;
+
+    private static final ThreadLocal<CRC32C> CRC = ThreadLocal.withInitial(CRC32C::new);
+
+    private final short version;
+    private final int maxLength;
+
+    /**
+     * @param version Version written to frame headers
+     * @param maxLength Max payload length, longer frames are rejected as corrupted
+     */
+    public BinaryFrameCodec(short version, int maxLength) {
+        if (maxLength < 0 || maxLength > WrappedByteBuffer.MAX_SIZE - HEADER_SIZE) throw new IllegalArgumentException("Invalid maxLength %s".formatted(maxLength));
+        this.version = version;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Create with version 0 and default max length
+     * @see #DEFAULT_MAX_LENGTH
+     */
+    public BinaryFrameCodec() {
+        this((short) 0, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Write readable bytes of payload as a frame
+     * <br>
+     * Reader offset of payload is moved to its writer offset
+     * @param payload Source buffer
+     * @param dst Target buffer
+     * @return Target buffer
+     * @throws IllegalArgumentException Payload is longer than max length
+     */
+    public WrappedByteBuffer encode(WrappedByteBuffer payload, WrappedByteBuffer dst) {
+        int len = payload.writeOffset() - payload.readerOffset();
+        if (len > maxLength) throw new IllegalArgumentException("Payload length %s exceeds %s".formatted(len, maxLength));
+
+        dst.ensureWritable(HEADER_SIZE + len);
+        dst.writeInt(len);
+        dst.writeShort(version);
+        dst.writeInt(checksum(payload, payload.readerOffset(), len));
+        dst.writeBytes(payload);
+        payload.skip(len);
+        return dst;
+    }
+
+    /**
+     * Read a complete frame at reader offset of source
+     * <br>
+     * Returned payload shares content with source, reader offset of source is moved past the frame, or left unchanged if the header is rejected.
+     * Use {@link #peekVersion(WrappedByteBuffer)} first to dispatch frames of other versions to their codecs
+     * @param src Source buffer containing the whole frame
+     * @return Payload view
+     * @throws CorruptedFrameException Bad length, version mismatched or checksum mismatched
+     * @see BinaryFrameDecoder
+     */
+    public WrappedByteBuffer decode(WrappedByteBuffer src) {
+        // Header is checked before consuming, so mismatched frames can be retried with another codec
+        src.ensureReadable(HEADER_SIZE);
+        int off = src.readerOffset();
+        int len = src.readInt(off);
+        checkLength(len);
+        short frameVersion = src.readShort(off + 4);
+        if (frameVersion != version) throw new CorruptedFrameException("Frame version %s, expected %s".formatted(frameVersion, version));
+        int crc = src.readInt(off + 6);
+        src.skip(HEADER_SIZE);
+        src.ensureReadable(len);
+        WrappedByteBuffer payload = payload(src, src.readerOffset(), len, crc);
+        src.skip(len);
+        return payload;
+    }
+
+    /**
+     * Get version of the frame at reader offset of source without consuming it
+     * @param src Source buffer containing at least the frame header
+     * @return Frame version
+     */
+    public static short peekVersion(WrappedByteBuffer src) {
+        src.ensureReadable(HEADER_SIZE);
+        return src.readShort(src.readerOffset() + 4);
+    }
+
+    void checkLength(int len) {
+        if (len < 0 || len > maxLength) throw new CorruptedFrameException("Bad frame length %s".formatted(len));
+    }
+
+    /**
+     * Verify checksum and create view of payload
+     */
+    static WrappedByteBuffer payload(WrappedByteBuffer src, int off, int len, int crc) {
+        int actual = checksum(src, off, len);
+        if (actual != crc) throw new CorruptedFrameException("Checksum mismatched at %s, expected %08x, got %08x".formatted(off, crc, actual));
+
+        return src.slice(off, len);
+    }
+
+    /**
+     * Compute CRC32C of a region, hardware accelerated where available
+     * <br>
+     * The CRC32C instance is reused per thread
+     * @param bb Source buffer
+     * @param off Region offset
+     * @param len Region length
+     * @return Checksum
+     */
+    public static int checksum(WrappedByteBuffer bb, int off, int len) {
+        CRC32C crc = CRC.get();
+        crc.reset();
+        crc.update(bb.view(off, len));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return Version written to frame headers
+     */
+    public short getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Max payload length
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+}
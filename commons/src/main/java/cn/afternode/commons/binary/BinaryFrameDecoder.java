@@ -0,0 +1,117 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.CorruptedFrameException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Incrementally split frames of {@link BinaryFrameCodec} from partial reads
+ * <br>
+ * Bytes are read from channel directly into an internal buffer, complete frames are returned as views of it without copying.
+ * Returned payloads are only valid until next {@link #readFrom(ReadableByteChannel)} or {@link #feed(ByteBuffer)}.
+ * Not thread-safe, use one decoder per connection
+ */
+public class BinaryFrameDecoder {
+    private final BinaryFrameCodec codec;
+    private final WrappedByteBuffer buffer;
+
+    private short version;
+
+    /**
+     * @param codec Frame settings
+     * @param initialSize Initial size of internal buffer, expanded for larger frames
+     * @param direct Use direct (off-heap) internal buffer
+     */
+    public BinaryFrameDecoder(BinaryFrameCodec codec, int initialSize, boolean direct) {
+        this.codec = codec;
+        int size = Math.max(initialSize, BinaryFrameCodec.HEADER_SIZE);
+        this.buffer = direct ? WrappedByteBuffer.direct(size, true) : new WrappedByteBuffer(size, true);
+    }
+
+    /**
+     * Create with 8 KiB heap buffer
+     * @param codec Frame settings
+     */
+    public BinaryFrameDecoder(BinaryFrameCodec codec) {
+        this(codec, 8192, false);
+    }
+
+    /**
+     * Perform a single read from channel, works with non-blocking channels
+     * @param channel Source channel
+     * @return Read length, 0 if no bytes available, or -1 if the channel has reached end-of-stream
+     * @throws IOException Error in ReadableByteChannel.read
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        prepare();
+        return buffer.readFrom(channel, buffer.capacity() - buffer.writeOffset());
+    }
+
+    /**
+     * Copy received bytes into internal buffer
+     * @param src Source bytes from position to limit, position is moved to limit
+     */
+    public void feed(ByteBuffer src) {
+        prepare();
+        int len = src.remaining();
+        buffer.ensureWritable(len);
+        buffer.view(buffer.writeOffset(), len).put(src);
+        buffer.advanceWriter(len);
+    }
+
+    /**
+     * Make room for next read, discarding consumed frames and expanding for incomplete large frame
+     */
+    private void prepare() {
+        if (buffer.readerOffset() > 0) buffer.compact();
+
+        int readable = buffer.writeOffset();
+        int required = BinaryFrameCodec.HEADER_SIZE;
+        if (readable >= BinaryFrameCodec.HEADER_SIZE) {
+            int len = buffer.readInt(0);
+            codec.checkLength(len);
+            required += len;
+        }
+        buffer.ensureWritable(Math.max(required - readable, 1));
+    }
+
+    /**
+     * Take next complete frame
+     * @return Payload view, or null if no complete frame is buffered
+     * @throws CorruptedFrameException Bad length, version mismatched or checksum mismatched
+     */
+    public WrappedByteBuffer next() {
+        int off = buffer.readerOffset();
+        int readable = buffer.writeOffset() - off;
+        if (readable < BinaryFrameCodec.HEADER_SIZE) return null;
+
+        int len = buffer.readInt(off);
+        codec.checkLength(len);
+        if (readable < BinaryFrameCodec.HEADER_SIZE + len) return null;
+
+        short version = buffer.readShort(off + 4);
+        // Same check as BinaryFrameCodec.decode, the frame is left buffered
+        if (version != codec.getVersion()) throw new CorruptedFrameException("Frame version %s, expected %s".formatted(version, codec.getVersion()));
+        int crc = buffer.readInt(off + 6);
+        WrappedByteBuffer payload = BinaryFrameCodec.payload(buffer, off + BinaryFrameCodec.HEADER_SIZE, len, crc);
+        this.version = version;
+        buffer.skip(BinaryFrameCodec.HEADER_SIZE + len);
+        return payload;
+    }
+
+    /**
+     * @return Version of the frame last returned by {@link #next()}
+     */
+    public short version() {
+        return version;
+    }
+
+    /**
+     * @return Length of buffered bytes not returned as frames yet
+     */
+    public int buffered() {
+        return buffer.writeOffset() - buffer.readerOffset();
+    }
+}
@@ -0,0 +1,258 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.SerializationException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Precomputed offsets of fixed-width fields of a type
+ * <br>
+ * In fixed format, primitives written before any variable-width field are always at the same offset,
+ * so they can be read or updated in place through a {@link Slot} without deserializing the whole object.
+ * Every primitive field has a slot, types declaring primitives after other fields need {@link BinarySerialize#fixedLayout()}.
+ * Offsets are relative to the start of data written by {@link BinarySerializer#serialize(Object, WrappedByteBuffer)},
+ * which must use fixed format without compression. Layouts are computed once per type and cached
+ */
+public final class BinaryLayout {
+    /**
+     * Length of version header before fields
+     */
+    public static final int HEADER_SIZE = 2;
+
+    private static final ClassValue<BinaryLayout> CACHE = new ClassValue<>() {
+        @Override
+        protected BinaryLayout computeValue(Class<?> type) {
+            return new BinaryLayout(BinarySchema.of(type, false));
+        }
+    };
+
+    private final Class<?> type;
+    private final short version;
+    private final int fixedSize;
+    private final Map<String, Slot> slots;
+
+    private BinaryLayout(BinarySchema schema) {
+        if (schema.compact || schema.tagged)
+            throw new SerializationException("Type %s is not in fixed format, compact and tagged types have no fixed layout".formatted(schema.type.getName()));
+
+        this.type = schema.type;
+        this.version = schema.version;
+
+        Map<String, Slot> slots = new LinkedHashMap<>();
+        int off = HEADER_SIZE;
+        FieldCodec variable = null;
+        for (FieldCodec f : schema.fields) {
+            int size = sizeOf(f.field.getType());
+            if (size < 0) {
+                if (variable == null) variable = f;
+                continue;
+            }
+            if (variable != null)
+                throw new SerializationException("Field %s is written after variable-width field %s, annotate %s with fixedLayout to write it first"
+                        .formatted(f.field.getName(), variable.field.getName(), type.getName()));
+            slots.put(f.field.getName(), new Slot(f.field.getName(), f.field.getType(), off));
+            off += size;
+        }
+        this.fixedSize = off;
+        this.slots = Collections.unmodifiableMap(slots);
+    }
+
+    /**
+     * Get layout of specified type
+     * @param type Target type
+     * @return Cached layout
+     * @throws SerializationException Type uses compact or tagged format, or has a primitive field after a variable-width field without fixed layout
+     * @throws cn.afternode.commons.serialization.ExcludedException Type was excluded from serialization
+     */
+    public static BinaryLayout of(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    private static int sizeOf(Class<?> type) {
+        if (type == byte.class || type == boolean.class) return 1;
+        if (type == short.class || type == char.class) return 2;
+        if (type == int.class || type == float.class) return 4;
+        if (type == long.class || type == double.class) return 8;
+        return -1;
+    }
+
+    /**
+     * Get slot of a fixed-width field
+     * <br>
+     * Resolve slots once and keep them, lookups by name are not meant for hot paths
+     * @param name Field name
+     * @return Slot
+     * @throws IllegalArgumentException Field not found or not fixed-width
+     */
+    public Slot slot(String name) {
+        Slot slot = slots.get(name);
+        if (slot == null) throw new IllegalArgumentException("%s has no fixed-width field %s".formatted(type.getName(), name));
+        return slot;
+    }
+
+    /**
+     * @return Slots of all fixed-width fields in written order
+     */
+    public Map<String, Slot> slots() {
+        return slots;
+    }
+
+    /**
+     * Check version header and length of an object in buffer
+     * @param bb Source buffer
+     * @param off Start offset of object
+     * @throws IllegalArgumentException Version mismatched
+     * @throws IndexOutOfBoundsException Fixed-width fields are not fully written
+     */
+    public void check(WrappedByteBuffer bb, int off) {
+        if (off < 0 || off > bb.writeOffset() - fixedSize)
+            throw new IndexOutOfBoundsException("Object at %s requires %s bytes, %s written".formatted(off, fixedSize, bb.writeOffset()));
+        short bbVersion = bb.readShort(off);
+        if (bbVersion != version) throw new IllegalArgumentException("Version mismatched, deserializing %s, currently %s".formatted(version, bbVersion));
+    }
+
+    /**
+     * @return Target type
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return Version of target type
+     */
+    public short getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Length of version header and all fixed-width fields
+     */
+    public int getFixedSize() {
+        return fixedSize;
+    }
+
+    /**
+     * Offset of a fixed-width field, with typed accessors reading or writing it in place
+     * <br>
+     * Accessors take start offset of the object and do not move buffer offsets
+     */
+    public static final class Slot {
+        private final String name;
+        private final Class<?> type;
+        private final int offset;
+
+        private Slot(String name, Class<?> type, int offset) {
+            this.name = name;
+            this.type = type;
+            this.offset = offset;
+        }
+
+        private void require(Class<?> expected) {
+            if (type != expected) throw new IllegalStateException("Field %s is %s, not %s".formatted(name, type.getName(), expected.getName()));
+        }
+
+        public int getInt(WrappedByteBuffer bb, int off) {
+            require(int.class);
+            return bb.readInt(off + offset);
+        }
+
+        public void setInt(WrappedByteBuffer bb, int off, int value) {
+            require(int.class);
+            bb.writeInt(value, off + offset);
+        }
+
+        public long getLong(WrappedByteBuffer bb, int off) {
+            require(long.class);
+            return bb.readLong(off + offset);
+        }
+
+        public void setLong(WrappedByteBuffer bb, int off, long value) {
+            require(long.class);
+            bb.writeLong(value, off + offset);
+        }
+
+        public short getShort(WrappedByteBuffer bb, int off) {
+            require(short.class);
+            return bb.readShort(off + offset);
+        }
+
+        public void setShort(WrappedByteBuffer bb, int off, short value) {
+            require(short.class);
+            bb.writeShort(value, off + offset);
+        }
+
+        public char getChar(WrappedByteBuffer bb, int off) {
+            require(char.class);
+            return bb.readChar(off + offset);
+        }
+
+        public void setChar(WrappedByteBuffer bb, int off, char value) {
+            require(char.class);
+            bb.writeChar(value, off + offset);
+        }
+
+        public byte getByte(WrappedByteBuffer bb, int off) {
+            require(byte.class);
+            return bb.readByte(off + offset);
+        }
+
+        public void setByte(WrappedByteBuffer bb, int off, byte value) {
+            require(byte.class);
+            bb.writeByte(value, off + offset);
+        }
+
+        public boolean getBoolean(WrappedByteBuffer bb, int off) {
+            require(boolean.class);
+            return bb.readBoolean(off + offset);
+        }
+
+        public void setBoolean(WrappedByteBuffer bb, int off, boolean value) {
+            require(boolean.class);
+            bb.writeBoolean(value, off + offset);
+        }
+
+        public float getFloat(WrappedByteBuffer bb, int off) {
+            require(float.class);
+            return bb.readFloat(off + offset);
+        }
+
+        public void setFloat(WrappedByteBuffer bb, int off, float value) {
+            require(float.class);
+            bb.writeFloat(value, off + offset);
+        }
+
+        public double getDouble(WrappedByteBuffer bb, int off) {
+            require(double.class);
+            return bb.readDouble(off + offset);
+        }
+
+        public void setDouble(WrappedByteBuffer bb, int off, double value) {
+            require(double.class);
+            bb.writeDouble(value, off + offset);
+        }
+
+        /**
+         * @return Field name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Primitive field type
+         */
+        public Class<?> getType() {
+            return type;
+        }
+
+        /**
+         * @return Offset from start of object, including version header
+         */
+        public int getOffset() {
+            return offset;
+        }
+    }
+}
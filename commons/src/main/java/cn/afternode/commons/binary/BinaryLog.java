@@ -0,0 +1,610 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.CorruptedFrameException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of keyed records persisted in a directory
+ * <br>
+ * Records are {@link BinaryFrameCodec} frames of sequence number, operation, key and serialized value,
+ * appended to segment files named by their first sequence number. Segments are rolled at a size limit,
+ * and every few records their file offsets are kept in a sparse index to start replay from a sequence quickly.
+ * {@link #snapshot()} compacts all closed segments into a snapshot holding the latest value of each key,
+ * files replaced by it are deleted once no replay is reading them.
+ * <br>
+ * Appends only write to page cache, {@link #sync(long)} makes them durable.
+ * Concurrent callers of sync share a single {@link FileChannel#force(boolean)}, so many saves cost one fsync.
+ * Truncated or corrupted records at the tail of the last segment, left by a crash, are dropped when opening
+ */
+public class BinaryLog implements Closeable {
+    /**
+     * Default segment size, 64 MiB
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 1L << 26;
+
+    /**
+     * Default count of records between sparse index entries
+     */
+    public static final int DEFAULT_INDEX_INTERVAL = 64;
+
+    private static final byte PUT = 0;
+    private static final byte DELETE = 1;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final BinarySerializer serializer;
+    private final long segmentSize;
+    private final int indexInterval;
+    private final BinaryFrameCodec codec = new BinaryFrameCodec();
+
+    private final Object lock = new Object();
+    private final Object syncLock = new Object();
+    private final Object snapshotLock = new Object();
+
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private Path snapshot;
+    private long snapshotSequence = -1;
+    private long nextSequence = 0;
+    private volatile long durableSequence = -1;
+    private boolean closed = false;
+
+    /**
+     * Count of running replays, files replaced by a snapshot are kept in obsolete until it drops to zero
+     */
+    private int readers = 0;
+    private final List<Path> obsolete = new ArrayList<>();
+
+    /**
+     * Open or create log in directory
+     * @param directory Log directory, created if not exists
+     * @param serializer Serializer encoding values
+     * @param segmentSize Segments are rolled after reaching this size
+     * @param indexInterval Count of records between sparse index entries
+     * @throws IOException Error in reading or recovering existing files
+     * @throws CorruptedFrameException Corrupted record found before the tail of the log
+     */
+    public BinaryLog(Path directory, BinarySerializer serializer, long segmentSize, int indexInterval) throws IOException {
+        if (segmentSize <= 0) throw new IllegalArgumentException("segmentSize must be positive");
+        if (indexInterval <= 0) throw new IllegalArgumentException("indexInterval must be positive");
+        this.directory = directory;
+        this.serializer = serializer;
+        this.segmentSize = segmentSize;
+        this.indexInterval = indexInterval;
+
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * Open or create log with default segment size and index interval
+     * @param directory Log directory, created if not exists
+     * @param serializer Serializer encoding values
+     * @throws IOException Error in reading or recovering existing files
+     * @see #DEFAULT_SEGMENT_SIZE
+     * @see #DEFAULT_INDEX_INTERVAL
+     */
+    public BinaryLog(Path directory, BinarySerializer serializer) throws IOException {
+        this(directory, serializer, DEFAULT_SEGMENT_SIZE, DEFAULT_INDEX_INTERVAL);
+    }
+
+    private void recover() throws IOException {
+        List<Path> segmentFiles = new ArrayList<>();
+        List<Path> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) Files.delete(file);
+                else if (name.endsWith(SEGMENT_SUFFIX)) segmentFiles.add(file);
+                else if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) snapshots.add(file);
+            }
+        }
+        segmentFiles.sort(null);
+        snapshots.sort(null);
+
+        // Only the latest snapshot is valid, older ones were left by a crash before deletion
+        for (int i = 0; i < snapshots.size() - 1; i++) Files.delete(snapshots.get(i));
+        if (!snapshots.isEmpty()) {
+            snapshot = snapshots.get(snapshots.size() - 1);
+            String name = snapshot.getFileName().toString();
+            snapshotSequence = Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+        }
+        nextSequence = snapshotSequence + 1;
+
+        for (int i = 0; i < segmentFiles.size(); i++) {
+            Path file = segmentFiles.get(i);
+            String name = file.getFileName().toString();
+            Segment segment = new Segment(file, Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+            boolean last = i == segmentFiles.size() - 1;
+
+            long[] lastSequence = {segment.base - 1};
+            long[] valid = {0};
+            try {
+                scan(file, 0, Long.MAX_VALUE, segment, (seq, key, data) -> lastSequence[0] = seq, valid);
+            } catch (CorruptedFrameException ex) {
+                if (!last) throw ex;
+            }
+            if (valid[0] < Files.size(file)) {
+                if (!last) throw new CorruptedFrameException("Truncated segment %s".formatted(file));
+                // Drop the broken tail left by a crash
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid[0]);
+                    channel.force(true);
+                }
+            }
+            segment.size = valid[0];
+
+            // Segments fully covered by snapshot were left by a crash during snapshot
+            if (lastSequence[0] <= snapshotSequence && !last) {
+                Files.delete(file);
+                continue;
+            }
+            nextSequence = Math.max(nextSequence, lastSequence[0] + 1);
+            segments.add(segment);
+        }
+
+        if (segments.isEmpty()) {
+            active = createSegment(nextSequence);
+            segments.add(active);
+        } else {
+            active = segments.get(segments.size() - 1);
+            active.open();
+        }
+        durableSequence = nextSequence - 1;
+    }
+
+    /**
+     * Append a value of key
+     * @param key Record key
+     * @param value Value to serialize, use {@link #delete(String)} to remove the key
+     * @return Sequence number of the record
+     * @throws IOException Error in writing segment
+     * @throws NullPointerException Value is null
+     */
+    public long append(String key, Object value) throws IOException {
+        return write(PUT, key, Objects.requireNonNull(value, "value"));
+    }
+
+    /**
+     * Append deletion of key
+     * @param key Record key
+     * @return Sequence number of the record
+     * @throws IOException Error in writing segment
+     */
+    public long delete(String key) throws IOException {
+        return write(DELETE, key, null);
+    }
+
+    private long write(byte op, String key, Object value) throws IOException {
+        WrappedByteBufferPool pool = serializer.getPool();
+        WrappedByteBuffer payload = pool.acquire();
+        WrappedByteBuffer frame = pool.acquire();
+        try {
+            // Serialize outside of lock, sequence is filled in later
+            payload.writeLong(0);
+            payload.writeByte(op);
+            payload.writeVarUtf(key);
+            if (value != null) serializer.serialize(value, payload);
+
+            synchronized (lock) {
+                if (closed) throw new ClosedChannelException();
+                if (active.size >= segmentSize) roll();
+
+                long seq = nextSequence;
+                payload.writeLong(seq, 0);
+                codec.encode(payload, frame);
+
+                long off = active.size;
+                ByteBuffer view = frame.view(0, frame.writeOffset());
+                while (view.hasRemaining()) active.size += active.channel.write(view, active.size);
+                if (active.count++ % indexInterval == 0) active.index.put(seq, off);
+                nextSequence++;
+                return seq;
+            }
+        } finally {
+            payload.release();
+            frame.release();
+        }
+    }
+
+    /**
+     * Make records up to sequence durable
+     * <br>
+     * Returns immediately if they are already durable. Otherwise, forces the active segment to disk,
+     * covering records appended by all threads so far, so callers waiting at the same time share one force
+     * @param sequence Sequence number returned by append or delete
+     * @throws IOException Error in FileChannel.force
+     */
+    public void sync(long sequence) throws IOException {
+        if (durableSequence >= sequence) return;
+        synchronized (syncLock) {
+            if (durableSequence >= sequence) return;
+
+            long target;
+            FileChannel channel;
+            synchronized (lock) {
+                if (closed) throw new ClosedChannelException();
+                target = nextSequence - 1;
+                channel = active.channel;
+            }
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException ex) {
+                // Segment was rolled, which forces it before closing
+                synchronized (lock) {
+                    if (closed) throw ex;
+                }
+            }
+            durableSequence = target;
+        }
+    }
+
+    /**
+     * Make all appended records durable
+     * @throws IOException Error in FileChannel.force
+     * @see #sync(long)
+     */
+    public void sync() throws IOException {
+        long last;
+        synchronized (lock) {
+            last = nextSequence - 1;
+        }
+        sync(last);
+    }
+
+    /**
+     * Close active segment and start a new one
+     */
+    private void roll() throws IOException {
+        active.channel.force(false);
+        active.channel.close();
+        active.channel = null;
+        active = createSegment(nextSequence);
+        segments.add(active);
+    }
+
+    private Segment createSegment(long base) throws IOException {
+        Segment segment = new Segment(directory.resolve("%020d%s".formatted(base, SEGMENT_SUFFIX)), base);
+        segment.open();
+        return segment;
+    }
+
+    /**
+     * Read all records in order, starting from snapshot
+     * @param consumer Record consumer
+     * @throws IOException Error in reading files
+     * @throws CorruptedFrameException Corrupted record found
+     */
+    public void replay(RecordConsumer consumer) throws IOException {
+        replay(0, consumer);
+    }
+
+    /**
+     * Read records with sequence number not less than from, in order
+     * <br>
+     * Snapshot is read if it may contain such records, segments are read from the nearest sparse index entry.
+     * Records appended during replay may or may not be included
+     * @param from First sequence number
+     * @param consumer Record consumer
+     * @throws IOException Error in reading files
+     * @throws CorruptedFrameException Corrupted record found
+     */
+    public void replay(long from, RecordConsumer consumer) throws IOException {
+        Path snapshot;
+        long snapshotSequence;
+        List<Segment> segments;
+        synchronized (lock) {
+            if (closed) throw new ClosedChannelException();
+            snapshot = this.snapshot;
+            snapshotSequence = this.snapshotSequence;
+            segments = new ArrayList<>(this.segments);
+            readers++;
+        }
+
+        try {
+            read(snapshot, snapshotSequence, segments, from, consumer);
+        } finally {
+            List<Path> delete = null;
+            synchronized (lock) {
+                if (--readers == 0 && !obsolete.isEmpty()) {
+                    delete = new ArrayList<>(obsolete);
+                    obsolete.clear();
+                }
+            }
+            if (delete != null) delete(delete);
+        }
+    }
+
+    /**
+     * Read records of snapshot and segments captured from state
+     */
+    private void read(Path snapshot, long snapshotSequence, List<Segment> segments, long from, RecordConsumer consumer) throws IOException {
+        RecordConsumer filtered = (seq, key, data) -> {
+            if (seq >= from && seq > snapshotSequence) consumer.accept(seq, key, data);
+        };
+        if (snapshot != null && from <= snapshotSequence) {
+            scan(snapshot, 0, Long.MAX_VALUE, null, (seq, key, data) -> {
+                if (seq >= from) consumer.accept(seq, key, data);
+            }, null);
+        }
+
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            if (i + 1 < segments.size() && segments.get(i + 1).base <= from) continue;
+
+            long start = 0;
+            long limit;
+            synchronized (lock) {
+                Map.Entry<Long, Long> entry = segment.index.floorEntry(from);
+                if (entry != null) start = entry.getValue();
+                // Records after this may be partially written
+                limit = segment.size;
+            }
+            scan(segment.file, start, limit, null, filtered, null);
+        }
+    }
+
+    /**
+     * Replay all records and deserialize the latest value of each key
+     * @param type Value type
+     * @return Values by key
+     * @param <T> Value type
+     * @throws IOException Error in reading files
+     */
+    public <T> Map<String, T> load(Class<T> type) throws IOException {
+        Map<String, T> result = new HashMap<>();
+        replay((seq, key, data) -> {
+            if (data == null) result.remove(key);
+            else result.put(key, serializer.deserialize(type, data));
+        });
+        return result;
+    }
+
+    /**
+     * Compact snapshot and all closed segments into a new snapshot, then delete them
+     * <br>
+     * The active segment is rolled first, so everything appended so far is included.
+     * Closed segments are immutable, so the snapshot is built without blocking appends or replays.
+     * Replaced files are deleted after replays reading them have finished
+     * @return Record count in new snapshot, or -1 if nothing was appended since last snapshot
+     * @throws IOException Error in reading or writing files
+     */
+    public int snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            Path previous;
+            long previousSequence;
+            List<Segment> compacted;
+            long last;
+            synchronized (lock) {
+                if (closed) throw new ClosedChannelException();
+                if (active.count > 0) roll();
+                last = nextSequence - 1;
+                if (last <= snapshotSequence) return -1;
+
+                previous = snapshot;
+                previousSequence = snapshotSequence;
+                compacted = new ArrayList<>(segments);
+                compacted.remove(active);
+            }
+
+            // Files are only deleted below, so reading them without lock is safe
+            // Find latest sequence of each key, then copy these records
+            Map<String, Long> latest = new HashMap<>();
+            read(previous, previousSequence, compacted, 0, (seq, key, data) -> {
+                if (data == null) latest.remove(key);
+                else latest.put(key, seq);
+            });
+
+            Path target = directory.resolve("%s%020d%s".formatted(SNAPSHOT_PREFIX, last, SNAPSHOT_SUFFIX));
+            Path temp = directory.resolve(target.getFileName() + TEMP_SUFFIX);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                WrappedByteBuffer frame = serializer.getPool().acquire();
+                try {
+                    read(previous, previousSequence, compacted, 0, (seq, key, data) -> {
+                        Long keep = latest.get(key);
+                        if (keep == null || keep != seq) return;
+
+                        WrappedByteBuffer payload = serializer.getPool().acquire();
+                        try {
+                            payload.writeLong(seq);
+                            payload.writeByte(PUT);
+                            payload.writeVarUtf(key);
+                            payload.writeBytes(data);
+                            frame.resetWriter();
+                            codec.encode(payload, frame);
+                            ByteBuffer view = frame.view(0, frame.writeOffset());
+                            while (view.hasRemaining()) channel.write(view);
+                        } finally {
+                            payload.release();
+                        }
+                    });
+                } finally {
+                    frame.release();
+                }
+                channel.force(true);
+            } catch (IOException | RuntimeException ex) {
+                Files.deleteIfExists(temp);
+                throw ex;
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+
+            // Deletions are safe from here, recovery skips records covered by the new snapshot
+            List<Path> delete = new ArrayList<>();
+            synchronized (lock) {
+                snapshot = target;
+                snapshotSequence = last;
+                segments.removeAll(compacted);
+
+                if (previous != null) obsolete.add(previous);
+                for (Segment segment : compacted) obsolete.add(segment.file);
+                // Running replays captured the old files, the last of them deletes these
+                if (readers == 0) {
+                    delete.addAll(obsolete);
+                    obsolete.clear();
+                }
+            }
+            delete(delete);
+            return latest.size();
+        }
+    }
+
+    private static void delete(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * @return Sequence number of next appended record
+     */
+    public long nextSequence() {
+        synchronized (lock) {
+            return nextSequence;
+        }
+    }
+
+    /**
+     * @return Sequence number of last durable record
+     */
+    public long durableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Force and close active segment
+     * @throws IOException Error in closing segment
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            active.channel.force(false);
+            active.channel.close();
+            durableSequence = nextSequence - 1;
+        }
+    }
+
+    /**
+     * Read complete records of a file from start offset to limit
+     * @param indexing Segment to build sparse index and count of, or null
+     * @param valid Receives offset after last valid record, or null
+     */
+    private void scan(Path file, long start, long limit, Segment indexing, RecordConsumer consumer, long[] valid) throws IOException {
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder(codec);
+        long off = start;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(start);
+            ReadableByteChannel bounded = limit == Long.MAX_VALUE ? channel : new BoundedChannel(channel, limit - start);
+            while (decoder.readFrom(bounded) >= 0) {
+                WrappedByteBuffer payload;
+                while ((payload = decoder.next()) != null) {
+                    long seq = payload.readLong();
+                    byte op = payload.readByte();
+                    String key = payload.readVarUtf();
+                    if (indexing != null && indexing.count++ % indexInterval == 0) indexing.index.put(seq, off);
+
+                    consumer.accept(seq, key, op == DELETE ? null : payload);
+                    off += BinaryFrameCodec.HEADER_SIZE + payload.writeOffset();
+                    if (valid != null) valid[0] = off;
+                }
+            }
+        }
+    }
+
+    /**
+     * Consumer of replayed records
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        /**
+         * @param sequence Sequence number
+         * @param key Record key
+         * @param data Serialized value, valid only during this call, or null for deletion
+         * @throws IOException Error in handling record
+         */
+        void accept(long sequence, String key, WrappedByteBuffer data) throws IOException;
+    }
+
+    /**
+     * Channel reading at most specified length from source
+     */
+    private static final class BoundedChannel implements ReadableByteChannel {
+        private final ReadableByteChannel source;
+        private long remaining;
+
+        BoundedChannel(ReadableByteChannel source, long remaining) {
+            this.source = source;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (remaining <= 0) return -1;
+            int limit = dst.limit();
+            if (dst.remaining() > remaining) dst.limit(dst.position() + (int) remaining);
+            try {
+                int n = source.read(dst);
+                if (n > 0) remaining -= n;
+                return n;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return source.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+
+    private static final class Segment {
+        final Path file;
+        final long base;
+        final NavigableMap<Long, Long> index = new TreeMap<>();
+        FileChannel channel;
+        long size = 0;
+        int count = 0;
+
+        Segment(Path file, long base) {
+            this.file = file;
+            this.base = base;
+        }
+
+        void open() throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            size = channel.size();
+        }
+    }
+}
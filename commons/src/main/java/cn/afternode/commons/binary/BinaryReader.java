@@ -0,0 +1,207 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.SerializationException;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Deserialize objects from a stream or channel through a fixed-size buffer
+ * <br>
+ * The buffer is refilled whenever a read needs more bytes than buffered, it only expands for a single value larger than it.
+ * With compression enabled in serializer, each compressed frame is buffered and inflated in memory, limited by {@link #setMaxLength(int)}
+ * @see BinaryWriter
+ */
+public class BinaryReader implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Default max length of a single value, 16 MiB
+     */
+    public static final int DEFAULT_MAX_LENGTH = 1 << 24;
+
+    private final BinarySerializer serializer;
+    private final ReadableByteChannel channel;
+    private final StreamingBuffer buffer;
+    private int maxLength = DEFAULT_MAX_LENGTH;
+
+    /**
+     * Read from blocking channel
+     * @param serializer Serializer and its settings
+     * @param channel Source channel
+     * @param bufferSize Buffer size
+     */
+    public BinaryReader(BinarySerializer serializer, ReadableByteChannel channel, int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("bufferSize must be positive");
+        this.serializer = serializer;
+        this.channel = channel;
+        this.buffer = new StreamingBuffer(bufferSize);
+    }
+
+    /**
+     * Read from blocking channel with default buffer size
+     * @param serializer Serializer and its settings
+     * @param channel Source channel
+     * @see #DEFAULT_BUFFER_SIZE
+     */
+    public BinaryReader(BinarySerializer serializer, ReadableByteChannel channel) {
+        this(serializer, channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Read from InputStream
+     * @param serializer Serializer and its settings
+     * @param in Source stream
+     * @param bufferSize Buffer size
+     */
+    public BinaryReader(BinarySerializer serializer, InputStream in, int bufferSize) {
+        this(serializer, Channels.newChannel(in), bufferSize);
+    }
+
+    /**
+     * Read from InputStream with default buffer size
+     * @param serializer Serializer and its settings
+     * @param in Source stream
+     * @see #DEFAULT_BUFFER_SIZE
+     */
+    public BinaryReader(BinarySerializer serializer, InputStream in) {
+        this(serializer, in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Read file sequentially from specified position, waiting for each read to complete
+     * @param serializer Serializer and its settings
+     * @param channel Source file
+     * @param position Start position in file
+     * @param bufferSize Buffer size
+     */
+    public BinaryReader(BinarySerializer serializer, AsynchronousFileChannel channel, long position, int bufferSize) {
+        this(serializer, new AsynchronousFileChannelAdapter(channel, position), bufferSize);
+    }
+
+    /**
+     * Read file sequentially from specified position with default buffer size
+     * @param serializer Serializer and its settings
+     * @param channel Source file
+     * @param position Start position in file
+     * @see #DEFAULT_BUFFER_SIZE
+     */
+    public BinaryReader(BinarySerializer serializer, AsynchronousFileChannel channel, long position) {
+        this(serializer, channel, position, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create instance and deserialize next object
+     * @param type Object type
+     * @return Result object
+     * @param <T> Object type
+     * @throws EOFException Source ended before the object
+     * @throws IOException Error in reading from source
+     * @see BinarySerializer#deserialize(Class, WrappedByteBuffer)
+     */
+    public <T> T read(Class<T> type) throws IOException {
+        try {
+            return serializer.deserialize(type, buffer);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Deserialize next object into provided instance
+     * @param obj Target object
+     * @throws EOFException Source ended before the object
+     * @throws IOException Error in reading from source
+     * @see BinarySerializer#deserialize(Object, WrappedByteBuffer)
+     */
+    public void read(Object obj) throws IOException {
+        try {
+            serializer.deserialize(obj, buffer);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Check if more bytes are available, reading from source if the buffer is empty
+     * @return False if the source has ended and all bytes are read
+     * @throws IOException Error in reading from source
+     */
+    public boolean hasRemaining() throws IOException {
+        if (buffer.readerOffset() < buffer.writeOffset()) return true;
+        buffer.compact();
+        int n;
+        do {
+            n = buffer.readFrom(channel, buffer.capacity());
+        } while (n == 0);
+        return n > 0;
+    }
+
+    /**
+     * Get underlying buffer, for reading raw values between objects
+     * <br>
+     * Absolute offset reads are not supported, as buffered bytes move when refilled
+     * @return Buffer
+     */
+    public WrappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Set max length of strings, arrays, collections and records read from source
+     * <br>
+     * Longer values are rejected before buffering or allocating for them, as their length cannot be checked against source size
+     * @param maxLength Max length in bytes
+     */
+    public void setMaxLength(int maxLength) {
+        if (maxLength < 0) throw new IllegalArgumentException("maxLength must not be negative");
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return Max length of a single value
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Close source
+     * @throws IOException Error in closing source
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private final class StreamingBuffer extends WrappedByteBuffer {
+        StreamingBuffer(int size) {
+            super(size);
+        }
+
+        @Override
+        void checkLength(long len) {
+            if (len < 0 || len > maxLength) throw new SerializationException("Bad length %s, max length is %s".formatted(len, maxLength));
+        }
+
+        @Override
+        void underflow(int len) {
+            compact();
+            grow(len - writeOffset());
+            try {
+                while (writeOffset() < len) {
+                    if (readFrom(channel, capacity() - writeOffset()) < 0)
+                        throw new EOFException("Expected %s bytes, %s available".formatted(len, writeOffset()));
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
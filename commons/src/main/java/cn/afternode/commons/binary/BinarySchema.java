@@ -0,0 +1,379 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.DeserializeInstantiationException;
+import cn.afternode.commons.serialization.ExcludedException;
+import cn.afternode.commons.serialization.SerializationException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Compiled serialization plan of a type
+ * <br>
+ * Computed once per class and cached, so serialization does no annotation or field lookups
+ */
+final class BinarySchema {
+    /**
+     * Max tag in tagged format, tags are shifted by 3 bits for wire type in field keys
+     */
+    static final int MAX_TAG = (1 << 28) - 1;
+
+    private static final ClassValue<BinarySchema> CACHE = new ClassValue<>() {
+        @Override
+        protected BinarySchema computeValue(Class<?> type) {
+            return new BinarySchema(type, false);
+        }
+    };
+    private static final ClassValue<BinarySchema> COMPACT_CACHE = new ClassValue<>() {
+        @Override
+        protected BinarySchema computeValue(Class<?> type) {
+            return new BinarySchema(type, true);
+        }
+    };
+
+    final Class<?> type;
+    final short version;
+    final boolean compact;
+    final boolean tagged;
+    final FieldCodec[] fields;
+
+    /**
+     * Tags of fields in tagged format, parallel to fields
+     */
+    final int[] tags;
+
+    /**
+     * Tags in ascending order, and field codecs parallel to them
+     */
+    private final int[] sortedTags;
+    private final FieldCodec[] byTag;
+
+    /**
+     * Generated codec, or null if fields are accessed with reflection
+     */
+    final BinaryCodec<?> codec;
+
+    private MethodHandle constructor;
+
+    /**
+     * Column codecs parallel to fields, built with the schema so they are safely published, or null if not flat
+     */
+    private final ColumnCodec[] columns;
+    private final String notFlat;
+
+    private BinarySchema(Class<?> type, boolean compact) {
+        if (type.isAnnotationPresent(BinarySerialize.Exclude.class))
+            throw new ExcludedException("Type %s was excluded from serialization".formatted(type.getName()), type);
+
+        this.type = type;
+
+        BinarySerialize annotation = type.getAnnotation(BinarySerialize.class);
+        this.version = annotation == null ? 0 : annotation.version();
+        this.compact = compact || (annotation != null && annotation.compact());
+        this.tagged = annotation != null && annotation.tagged();
+
+        List<Field> declared = new ArrayList<>();
+        for (Field f : type.getDeclaredFields()) {
+            if (Modifier.isStatic(f.getModifiers())) continue;
+            if (f.isAnnotationPresent(BinarySerialize.Exclude.class)) continue;
+            declared.add(f);
+        }
+        if (annotation != null && annotation.fixedLayout()) {
+            if (tagged) throw new SerializationException("Type %s can't use both tagged format and fixed layout".formatted(type.getName()));
+            // Stable, so primitives and other fields each keep declaration order
+            declared.sort(Comparator.comparingInt(f -> f.getType().isPrimitive() ? 0 : 1));
+        }
+
+        // Use generated codec only if it covers every serialized field
+        BinaryCodec<?> codec = BinaryCodecs.find(type);
+        List<String> codecFields = codec == null ? List.of() : List.of(codec.fields());
+        if (codec != null && (codecFields.size() != declared.size() || !declared.stream().allMatch(f -> codecFields.contains(f.getName()))))
+            codec = null;
+        this.codec = codec;
+
+        FieldCodec[] fields = new FieldCodec[declared.size()];
+        for (int i = 0; i < fields.length; i++) {
+            Field f = declared.get(i);
+            if (codec == null) f.trySetAccessible();
+            fields[i] = FieldCodec.of(f, codec, codecFields.indexOf(f.getName()), this.compact);
+        }
+        this.fields = fields;
+
+        this.tags = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            BinarySerialize.Tag tag = fields[i].field.getAnnotation(BinarySerialize.Tag.class);
+            tags[i] = tag == null ? i + 1 : tag.value();
+            if (tags[i] <= 0 || tags[i] > MAX_TAG)
+                throw new SerializationException("Tag of %s must be from 1 to %s".formatted(fields[i].field, MAX_TAG));
+        }
+
+        Integer[] order = new Integer[tagged ? fields.length : 0];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(i -> tags[i]));
+        this.sortedTags = new int[order.length];
+        this.byTag = new FieldCodec[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedTags[i] = tags[order[i]];
+            byTag[i] = fields[order[i]];
+            if (i > 0 && sortedTags[i] == sortedTags[i - 1])
+                throw new SerializationException("Duplicated tag %s in %s".formatted(sortedTags[i], type.getName()));
+        }
+
+        ColumnCodec[] columns = new ColumnCodec[fields.length];
+        String notFlat = null;
+        try {
+            for (int i = 0; i < columns.length; i++) columns[i] = ColumnCodec.of(fields[i]);
+        } catch (SerializationException ex) {
+            columns = null;
+            notFlat = ex.getMessage();
+        }
+        this.columns = columns;
+        this.notFlat = notFlat;
+    }
+
+    /**
+     * Get compiled plan of specified type
+     * @param type Target type
+     * @param compact Use compact wire format, types annotated with compact always use it
+     * @return Cached plan
+     * @throws ExcludedException Type was excluded from serialization
+     * @throws cn.afternode.commons.serialization.SerializationException Type contains unsupported fields
+     */
+    static BinarySchema of(Class<?> type, boolean compact) {
+        return (compact ? COMPACT_CACHE : CACHE).get(type);
+    }
+
+    /**
+     * Write version header and fields
+     * @param obj Source object
+     * @param bb Target buffer
+     * @param ctx Serialization context
+     */
+    void write(Object obj, WrappedByteBuffer bb, BinaryContext ctx) {
+        bb.writeShort(version);
+        writeFields(obj, bb, ctx);
+    }
+
+    /**
+     * Write fields without version header
+     * @param obj Source object
+     * @param bb Target buffer
+     * @param ctx Serialization context
+     */
+    void writeFields(Object obj, WrappedByteBuffer bb, BinaryContext ctx) {
+        if (!tagged) {
+            for (FieldCodec f: fields) writeField(f, obj, bb, ctx);
+            return;
+        }
+
+        for (int i = 0; i < fields.length; i++) {
+            FieldCodec f = fields[i];
+            int wireType = f.wireType();
+            bb.writeVarInt((tags[i] << 3) | wireType);
+            if (wireType == WireType.LENGTH) {
+                bb.ensureWritable(4);
+                bb.pin();
+                try {
+                    int lengthOff = bb.writeOffset();
+                    bb.writeInt(0);
+                    writeField(f, obj, bb, ctx);
+                    bb.writeInt(bb.writeOffset() - lengthOff - 4, lengthOff);
+                } finally {
+                    bb.unpin();
+                }
+            } else {
+                writeField(f, obj, bb, ctx);
+            }
+        }
+        bb.writeVarInt(0);
+    }
+
+    /**
+     * Check version header and read fields
+     * <br>
+     * Tagged types accept any version, and apply upgrades registered in context when reading older data
+     * @param obj Target object
+     * @param bb Source buffer
+     * @param ctx Serialization context
+     * @throws IllegalArgumentException Version mismatched
+     */
+    void read(Object obj, WrappedByteBuffer bb, BinaryContext ctx) {
+        readFields(obj, bb, ctx, bb.readShort());
+    }
+
+    /**
+     * Read fields written with specified version, without version header
+     * @param obj Target object
+     * @param bb Source buffer
+     * @param ctx Serialization context
+     * @param bbVersion Version of source data
+     * @throws IllegalArgumentException Version mismatched
+     * @see #read(Object, WrappedByteBuffer, BinaryContext)
+     */
+    @SuppressWarnings("unchecked")
+    void readFields(Object obj, WrappedByteBuffer bb, BinaryContext ctx, short bbVersion) {
+        if (!tagged) {
+            if (bbVersion != version) throw new IllegalArgumentException("Version mismatched, deserializing %s, currently %s".formatted(version, bbVersion));
+            for (FieldCodec f: fields) readField(f, obj, bb, ctx);
+            return;
+        }
+
+        NavigableMap<Short, BinaryUpgrade<?>> upgrades = bbVersion < version ? ctx.upgrades(type) : null;
+        Map<Integer, WrappedByteBuffer> unknown = null;
+
+        int key;
+        while ((key = bb.readVarInt()) != 0) {
+            int tag = key >>> 3;
+            int wireType = key & 7;
+
+            int index = Arrays.binarySearch(sortedTags, tag);
+            FieldCodec f = index >= 0 ? byTag[index] : null;
+            if (f != null && f.wireType() == wireType) {
+                if (wireType == WireType.LENGTH) {
+                    // Field must end at its length, so a changed type of the same wire type fails instead of going out of sync
+                    int len = bb.readInt();
+                    bb.checkLength(len);
+                    bb.ensureReadable(len);
+                    int start = bb.readerOffset();
+                    readField(f, obj, bb, ctx);
+                    if (bb.readerOffset() - start != len)
+                        throw new SerializationException("Field %s has length %s, but %s bytes read".formatted(f.field, len, bb.readerOffset() - start));
+                } else {
+                    readField(f, obj, bb, ctx);
+                }
+            } else {
+                WrappedByteBuffer payload = WireType.skip(bb, wireType, upgrades != null);
+                if (payload != null) {
+                    if (unknown == null) unknown = new HashMap<>();
+                    unknown.put(tag, payload);
+                }
+            }
+        }
+
+        if (upgrades != null) {
+            Map<Integer, WrappedByteBuffer> fields = unknown == null ? Map.of() : unknown;
+            for (BinaryUpgrade<?> upgrade : upgrades.subMap(bbVersion, true, version, false).values()) {
+                ((BinaryUpgrade<Object>) upgrade).upgrade(obj, fields);
+            }
+        }
+    }
+
+    private static void writeField(FieldCodec f, Object obj, WrappedByteBuffer bb, BinaryContext ctx) {
+        try {
+            f.write(obj, bb, ctx);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable th) {
+            throw new SerializationException("Unable to serialize field %s".formatted(f.field), th);
+        }
+    }
+
+    private static void readField(FieldCodec f, Object obj, WrappedByteBuffer bb, BinaryContext ctx) {
+        try {
+            f.read(obj, bb, ctx);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable th) {
+            throw new SerializationException("Unable to deserialize field %s".formatted(f.field), th);
+        }
+    }
+
+    /**
+     * Get column codecs of fields, parallel to fields
+     * @return Column codecs
+     * @throws SerializationException Type contains fields that are not flat
+     */
+    ColumnCodec[] columns() {
+        if (columns == null) throw new SerializationException(notFlat);
+        return columns;
+    }
+
+    /**
+     * Write all values of a column with integer length prefix
+     * @param column Column index
+     * @param objs Source objects
+     * @param bb Target buffer
+     */
+    void writeColumn(int column, List<?> objs, WrappedByteBuffer bb) {
+        ColumnCodec codec = columns()[column];
+        bb.ensureWritable(4);
+        bb.pin();
+        try {
+            int lengthOff = bb.writeOffset();
+            bb.writeInt(0);
+            codec.write(objs, bb);
+            bb.writeInt(bb.writeOffset() - lengthOff - 4, lengthOff);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable th) {
+            throw new SerializationException("Unable to serialize column %s".formatted(codec.field.field), th);
+        } finally {
+            bb.unpin();
+        }
+    }
+
+    /**
+     * Read a column written by {@link #writeColumn(int, List, WrappedByteBuffer)}, or skip it
+     * @param column Column index
+     * @param objs Target objects
+     * @param bb Source buffer
+     * @param skip Skip the column without decoding
+     * @throws SerializationException Column length mismatched
+     */
+    void readColumn(int column, Object[] objs, WrappedByteBuffer bb, boolean skip) {
+        int len = bb.readInt();
+        bb.checkLength(len);
+        if (skip) {
+            bb.skip(len);
+            return;
+        }
+
+        ColumnCodec codec = columns()[column];
+        bb.ensureReadable(len);
+        int start = bb.readerOffset();
+        try {
+            codec.read(objs, bb);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable th) {
+            throw new SerializationException("Unable to deserialize column %s".formatted(codec.field.field), th);
+        }
+        if (bb.readerOffset() - start != len)
+            throw new SerializationException("Column %s has length %s, but %s bytes read".formatted(codec.field.field, len, bb.readerOffset() - start));
+    }
+
+    /**
+     * Create instance with no-args constructor
+     * @return Created instance
+     * @throws DeserializeInstantiationException Error in creating instance
+     */
+    Object newInstance() {
+        MethodHandle c = this.constructor;
+        try {
+            if (c == null) {
+                if (codec != null) {
+                    c = MethodHandles.lookup().findVirtual(BinaryCodec.class, "newInstance", MethodType.methodType(Object.class)).bindTo(codec);
+                } else {
+                    Constructor<?> cons = type.getDeclaredConstructor();
+                    cons.trySetAccessible();
+                    c = MethodHandles.lookup().unreflectConstructor(cons).asType(MethodType.methodType(Object.class));
+                }
+                this.constructor = c;
+            }
+            return (Object) c.invokeExact();
+        } catch (Throwable th) {
+            throw new DeserializeInstantiationException("Type %s".formatted(type.getName()), th);
+        }
+    }
+}
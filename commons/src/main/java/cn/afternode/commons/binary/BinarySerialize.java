@@ -11,11 +11,68 @@ public @interface BinarySerialize {
     /**
      * Version marker for binary deserialization
      * <br>
-     * If the version is mismatched, an error will be thrown
+     * If the version is mismatched, an error will be thrown, unless the type is {@link #tagged()}
      * @return version
      */
     short version() default 0;
 
+    /**
+     * Use compact wire format for this type
+     * <br>
+     * Integers are written as zigzag varints, string length prefixes and enum ordinals as varints
+     * @return If compact format is forced
+     * @see BinarySerializer#setCompact(boolean)
+     */
+    boolean compact() default false;
+
+    /**
+     * Use tagged format for this type
+     * <br>
+     * Every field is written with its tag and wire type, so readers skip unknown fields and keep defaults of missing ones.
+     * Data written by older versions is accepted and passed through registered upgrades.
+     * @return If tagged format is used
+     * @see Tag
+     * @see BinarySerializer#registerUpgrade(Class, short, BinaryUpgrade)
+     */
+    boolean tagged() default false;
+
+    /**
+     * Write primitive fields before all other fields, each group in declaration order
+     * <br>
+     * In fixed format every primitive field is then at the same offset, so {@link BinaryLayout} has a slot for each of them.
+     * Changes the field order on the wire, and can't be combined with {@link #tagged()}
+     * @return If fixed-width fields are written first
+     */
+    boolean fixedLayout() default false;
+
+    /**
+     * Field tag in tagged format
+     * <br>
+     * Defaults to 1-based index of the field in serialized fields, set explicit tags to reorder or remove fields safely
+     */
+    @Target(ElementType.FIELD)
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Tag {
+        /**
+         * @return Tag, from 1 to 2^28 - 1 and unique in the type
+         */
+        int value();
+    }
+
+    /**
+     * Encoding of an enum field, defaults to short ordinal, or varint ordinal in compact format
+     * <br>
+     * {@link EnumEncoding#NAME} keeps data readable after constants are reordered
+     */
+    @Target(ElementType.FIELD)
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface EnumFormat {
+        /**
+         * @return Encoding
+         */
+        EnumEncoding value();
+    }
+
     /**
      * Exclude field or class from binary serialization
      */
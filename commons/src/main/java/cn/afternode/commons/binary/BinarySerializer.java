@@ -1,109 +1,119 @@
 package cn.afternode.commons.binary;
 
 import cn.afternode.commons.serialization.DeserializeInstantiationException;
+import cn.afternode.commons.serialization.ExcludedException;
 import cn.afternode.commons.serialization.FieldAccessException;
+import cn.afternode.commons.serialization.SerializationException;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 public class BinarySerializer {
     /**
-     * Serialize an object to WrappedByteBuffer
-     * <br>
-     * Currently, it supports String, int, short and enum
+     * Minimum records per segment in parallel batch serialization
+     */
+    private static final int MIN_SEGMENT_RECORDS = 256;
+
+    /**
+     * Default max row count of a columnar batch, 16M rows
+     */
+    public static final int DEFAULT_MAX_ROWS = 1 << 24;
+
+    private WrappedByteBufferPool pool = WrappedByteBufferPool.DEFAULT;
+    private boolean compact = false;
+    private Utf8StringCache stringCache = null;
+    private boolean trackReferences = false;
+    private BinaryCompression compression = null;
+    private int maxRows = DEFAULT_MAX_ROWS;
+    private final Map<Class<?>, NavigableMap<Short, BinaryUpgrade<?>>> upgrades = new ConcurrentHashMap<>();
+
+    /**
+     * Serialize an object to provided WrappedByteBuffer
      * <br>
-     * Write collections may cause errors in deserialization
+     * Currently, it supports primitives and their boxed types, String, enum, UUID, arrays,
+     * collections/maps with declared element types and nested {@link BinarySerialize} types
      * @param obj Source object
-     * @param size ByteBuffer allocation size
-     * @return Serialized
+     * @param bb Target buffer
+     * @return Target buffer
      * @throws FieldAccessException Field access error
+     * @throws ExcludedException Type was excluded from serialization
      */
-    public WrappedByteBuffer serialize(Object obj, int size) {
-        Class<?> c = obj.getClass();
+    public WrappedByteBuffer serialize(Object obj, WrappedByteBuffer bb) {
+        return compressed(bb, target -> writeObject(obj, target));
+    }
 
-        WrappedByteBuffer bb = new WrappedByteBuffer(size);
+    private void writeObject(Object obj, WrappedByteBuffer bb) {
+        BinarySchema schema = BinarySchema.of(obj.getClass(), compact);
 
-        short version = 0;
-        if (c.isAnnotationPresent(BinarySerialize.Exclude.class)) throw new IllegalArgumentException("Type %s was excluded from serialization".formatted(c.getName()));
-        if (c.isAnnotationPresent(BinarySerialize.class)) {
-            version = c.getAnnotation(BinarySerialize.class).version();
-        }
-        bb.writeShort(version);
-
-        for (Field f: c.getDeclaredFields()) {
-            if (f.isAnnotationPresent(BinarySerialize.Exclude.class)) continue;
-            f.trySetAccessible();
-
-            try {
-                Class<?> type = f.getType();
-                Object it = f.get(obj);
-                if (type == String.class) {
-                    bb.writeUtf((String) it);
-                } else if (type == int.class) {
-                    bb.writeInt((int) it);
-                } else if (type == short.class) {
-                    bb.writeShort((Short) it);
-                } else if (Enum.class.isAssignableFrom(type)) {
-                    bb.writeEnum((Enum<?>) it);
-                } else {
-                    throw new RuntimeException("Unsupported type %s".formatted(type.getName()));
-                }
-            } catch (IllegalAccessException ex) {
-                throw new FieldAccessException(f, ex);
-            }
-        }
+        BinaryContext ctx = BinaryContext.create(trackReferences, upgrades);
+        if (trackReferences) ctx.writeReference(obj);
+        schema.write(obj, bb, ctx);
+    }
 
-        return bb;
+    /**
+     * Serialize an object to a growable WrappedByteBuffer
+     * @param obj Source object
+     * @param size Initial ByteBuffer allocation size
+     * @return Serialized
+     * @see #serialize(Object, WrappedByteBuffer)
+     */
+    public WrappedByteBuffer serialize(Object obj, int size) {
+        return serialize(obj, new WrappedByteBuffer(size, true));
     }
 
     /**
-     * Serialize an object to WrappedByteBuffer with default size
+     * Serialize an object to a buffer acquired from pool
+     * <br>
+     * The result can be returned to the pool with {@link WrappedByteBuffer#release()}
      * @param obj Source object
      * @return Serialized
-     * @see #serialize(Object, int)
+     * @see #serialize(Object, WrappedByteBuffer)
+     * @see #setPool(WrappedByteBufferPool)
      */
     public WrappedByteBuffer serialize(Object obj) {
-        return serialize(obj, WrappedByteBuffer.DEFAULT_SIZE);
+        WrappedByteBuffer bb = pool.acquire();
+        try {
+            return serialize(obj, bb);
+        } catch (Throwable th) {
+            bb.release();
+            throw th;
+        }
     }
 
     /**
      * Deserialize WrappedByteBuffer to object
+     * @throws FieldAccessException Field access error
+     * @throws ExcludedException Type was excluded from serialization
      */
     public void deserialize(Object obj, WrappedByteBuffer bb) {
-        Class<?> c = obj.getClass();
+        decompressed(bb, source -> {
+            readObject(obj, source);
+            return null;
+        });
+    }
 
-        short version = 0;
-        if (c.isAnnotationPresent(BinarySerialize.Exclude.class)) throw new IllegalArgumentException("Type %s was excluded from serialization".formatted(c.getName()));
-        if (c.isAnnotationPresent(BinarySerialize.class)) {
-            version = c.getAnnotation(BinarySerialize.class).version();
-        }
+    private void readObject(Object obj, WrappedByteBuffer bb) {
+        BinarySchema schema = BinarySchema.of(obj.getClass(), compact);
 
-        short bbVersion = bb.readShort();
-        if (bbVersion != version) throw new IllegalArgumentException("Version mismatched, deserializing %s, currently %s".formatted(version, bbVersion));
-
-        for (Field f: c.getDeclaredFields()) {
-            if (f.isAnnotationPresent(BinarySerialize.Exclude.class)) continue;
-            f.trySetAccessible();
-
-            try {
-                Class<?> type = f.getType();
-
-                if (type == String.class) {
-                    f.set(obj, bb.readUtf());
-                } else if (type == int.class) {
-                    f.set(obj, bb.readInt());
-                } else if (type == short.class) {
-                    f.set(obj, bb.readShort());
-                } else if (Enum.class.isAssignableFrom(type)) {
-                    Class<? extends Enum<?>> te = (Class<Enum<?>>) type;
-                    f.set(obj, bb.tryReadEnum(te));
-                } else {
-                    throw new RuntimeException("Unsupported type %s".formatted(type.getName()));
-                }
-            } catch (IllegalAccessException ex) {
-                throw new FieldAccessException(f, ex);
-            }
+        BinaryContext ctx = BinaryContext.create(trackReferences, upgrades);
+        if (trackReferences) ctx.registerRead(obj);
+
+        boolean attachCache = stringCache != null && bb.getStringCache() == null;
+        if (attachCache) bb.setStringCache(stringCache);
+        try {
+            schema.read(obj, bb, ctx);
+        } finally {
+            if (attachCache) bb.setStringCache(null);
         }
     }
 
@@ -115,14 +125,388 @@ public class BinarySerializer {
      * @throws DeserializeInstantiationException Error in creating instance
      */
     public <T> T deserialize(Class<T> type, WrappedByteBuffer bb) {
+        T obj = type.cast(BinarySchema.of(type, compact).newInstance());
+        deserialize(obj, bb);
+        return obj;
+    }
+
+    /**
+     * Serialize objects of the same type as a batch
+     * <br>
+     * Written as record count, version header of the type, then fields of each object with an integer length prefix.
+     * Each record has its own reference table, so shared references are only tracked inside a record
+     * @param objs Source objects of exactly the same type, null elements are not allowed
+     * @param bb Target buffer
+     * @return Target buffer
+     * @param <T> Object type
+     * @throws IllegalArgumentException Objects are of different types
+     * @see #deserializeAll(Class, WrappedByteBuffer)
+     */
+    public <T> WrappedByteBuffer serializeAll(Collection<? extends T> objs, WrappedByteBuffer bb) {
+        return serializeAll(objs, bb, false);
+    }
+
+    /**
+     * Serialize objects of the same type as a batch, optionally in parallel
+     * <br>
+     * In parallel mode, records are split into segments encoded on the common ForkJoinPool into buffers acquired from pool,
+     * then concatenated in order. Output is the same as sequential mode
+     * @param objs Source objects of exactly the same type, null elements are not allowed
+     * @param bb Target buffer
+     * @param parallel Encode segments in parallel, ignored for small batches
+     * @return Target buffer
+     * @param <T> Object type
+     * @throws IllegalArgumentException Objects are of different types
+     * @see #serializeAll(Collection, WrappedByteBuffer)
+     */
+    public <T> WrappedByteBuffer serializeAll(Collection<? extends T> objs, WrappedByteBuffer bb, boolean parallel) {
+        return compressed(bb, target -> writeBatch(objs, target, parallel));
+    }
+
+    private <T> void writeBatch(Collection<? extends T> objs, WrappedByteBuffer bb, boolean parallel) {
+        List<? extends T> list = objs instanceof List<? extends T> l ? l : new ArrayList<>(objs);
+        ValueCodec.writeLength(bb, list.size(), compact);
+        if (list.isEmpty()) return;
+
+        Class<?> type = list.get(0).getClass();
+        BinarySchema schema = BinarySchema.of(type, compact);
+        bb.writeShort(schema.version);
+
+        int segments = parallel ? Math.min(ForkJoinPool.getCommonPoolParallelism(), list.size() / MIN_SEGMENT_RECORDS) : 1;
+        if (segments <= 1) {
+            for (T obj : list) writeRecord(schema, obj, bb);
+            return;
+        }
+
+        // Buffers are acquired and released on this thread, so they are reused by later batches.
+        // On failure they are dropped, as other segments may still be encoding
+        WrappedByteBuffer[] buffers = new WrappedByteBuffer[segments];
+        for (int i = 0; i < segments; i++) buffers[i] = pool.acquire();
+        int size = list.size();
+        IntStream.range(0, segments).parallel().forEach(i -> {
+            WrappedByteBuffer segment = buffers[i];
+            for (int j = (int) ((long) size * i / segments), end = (int) ((long) size * (i + 1) / segments); j < end; j++)
+                writeRecord(schema, list.get(j), segment);
+        });
+
+        for (WrappedByteBuffer segment : buffers) {
+            bb.writeBytes(segment);
+            segment.release();
+        }
+    }
+
+    private void writeRecord(BinarySchema schema, Object obj, WrappedByteBuffer bb) {
+        if (obj.getClass() != schema.type)
+            throw new IllegalArgumentException("Expected %s in batch, got %s".formatted(schema.type.getName(), obj.getClass().getName()));
+
+        BinaryContext ctx = BinaryContext.create(trackReferences, upgrades);
+        if (trackReferences) ctx.writeReference(obj);
+
+        bb.ensureWritable(4);
+        bb.pin();
+        try {
+            int lengthOff = bb.writeOffset();
+            bb.writeInt(0);
+            schema.writeFields(obj, bb, ctx);
+            bb.writeInt(bb.writeOffset() - lengthOff - 4, lengthOff);
+        } finally {
+            bb.unpin();
+        }
+    }
+
+    /**
+     * Deserialize a batch written by {@link #serializeAll(Collection, WrappedByteBuffer)}
+     * @param type Object type
+     * @param bb Source buffer
+     * @return Result objects in written order
+     * @param <T> Object type
+     * @throws SerializationException Record length mismatched
+     * @throws DeserializeInstantiationException Error in creating instance
+     */
+    public <T> List<T> deserializeAll(Class<T> type, WrappedByteBuffer bb) {
+        return decompressed(bb, source -> readBatch(type, source));
+    }
+
+    private <T> List<T> readBatch(Class<T> type, WrappedByteBuffer bb) {
+        // Each record has at least its length prefix
+        int count = ValueCodec.readLength(bb, compact, 4);
+        List<T> result = new ArrayList<>(count);
+        if (count == 0) return result;
+
+        BinarySchema schema = BinarySchema.of(type, compact);
+        short bbVersion = bb.readShort();
+
+        boolean attachCache = stringCache != null && bb.getStringCache() == null;
+        if (attachCache) bb.setStringCache(stringCache);
         try {
-            Constructor<T> c = type.getDeclaredConstructor();
-            c.trySetAccessible();
-            T obj = c.newInstance();
-            deserialize(obj, bb);
-            return obj;
-        } catch (NoSuchMethodException | IllegalAccessException | InstantiationException | InvocationTargetException th) {
-            throw new DeserializeInstantiationException("Type %s".formatted(type.getName()), th);
+            for (int i = 0; i < count; i++) {
+                int len = bb.readInt();
+                bb.checkLength(len);
+                bb.ensureReadable(len);
+                int start = bb.readerOffset();
+
+                T obj = type.cast(schema.newInstance());
+                BinaryContext ctx = BinaryContext.create(trackReferences, upgrades);
+                if (trackReferences) ctx.registerRead(obj);
+                schema.readFields(obj, bb, ctx, bbVersion);
+
+                if (bb.readerOffset() - start != len)
+                    throw new SerializationException("Record %s has length %s, but %s bytes read".formatted(i, len, bb.readerOffset() - start));
+                result.add(obj);
+            }
+        } finally {
+            if (attachCache) bb.setStringCache(null);
+        }
+        return result;
+    }
+
+    /**
+     * Serialize objects of the same flat type in columnar format
+     * <br>
+     * All values of the first field are written, then all values of the second field, and so on.
+     * Integral columns are delta and run-length encoded, strings, enums, boxed types and UUIDs are dictionary encoded.
+     * Each column has an integer length prefix, so readers can skip columns they don't need
+     * @param objs Source objects of exactly the same type, null elements are not allowed
+     * @param bb Target buffer
+     * @return Target buffer
+     * @param <T> Object type
+     * @throws IllegalArgumentException Objects are of different types
+     * @throws SerializationException Type contains fields other than primitives, boxed types, String, enum and UUID
+     * @see #deserializeColumnar(Class, WrappedByteBuffer, String...)
+     */
+    public <T> WrappedByteBuffer serializeColumnar(Collection<? extends T> objs, WrappedByteBuffer bb) {
+        return compressed(bb, target -> writeColumns(objs, target));
+    }
+
+    private <T> void writeColumns(Collection<? extends T> objs, WrappedByteBuffer bb) {
+        List<? extends T> list = objs instanceof List<? extends T> l ? l : new ArrayList<>(objs);
+        bb.writeVarInt(list.size());
+        if (list.isEmpty()) return;
+
+        BinarySchema schema = BinarySchema.of(list.get(0).getClass(), compact);
+        schema.columns();
+        for (T obj : list) {
+            if (obj.getClass() != schema.type)
+                throw new IllegalArgumentException("Expected %s in batch, got %s".formatted(schema.type.getName(), obj.getClass().getName()));
         }
+
+        bb.writeShort(schema.version);
+        bb.writeVarInt(schema.fields.length);
+        for (int i = 0; i < schema.fields.length; i++) schema.writeColumn(i, list, bb);
+    }
+
+    /**
+     * Deserialize objects written by {@link #serializeColumnar(Collection, WrappedByteBuffer)}
+     * <br>
+     * When columns are specified, other columns are skipped without decoding and their fields keep values set by constructor
+     * @param type Object type
+     * @param bb Source buffer
+     * @param columns Names of fields to read, or empty to read all
+     * @return Result objects in written order
+     * @param <T> Object type
+     * @throws IllegalArgumentException Version or column count mismatched, or unknown column name
+     * @throws SerializationException Row count exceeds max row count
+     * @throws DeserializeInstantiationException Error in creating instance
+     * @see #setMaxRows(int)
+     */
+    public <T> List<T> deserializeColumnar(Class<T> type, WrappedByteBuffer bb, String... columns) {
+        return decompressed(bb, source -> readColumns(type, source, columns));
+    }
+
+    private <T> List<T> readColumns(Class<T> type, WrappedByteBuffer bb, String[] columns) {
+        int count = bb.readVarInt();
+        // Rows of a type without fields take no bytes, so the count can't be checked against input
+        if (count < 0 || count > maxRows) throw new SerializationException("Bad row count %s, max row count is %s".formatted(count, maxRows));
+        if (count == 0) return new ArrayList<>();
+
+        BinarySchema schema = BinarySchema.of(type, compact);
+        schema.columns();
+
+        boolean[] skip = new boolean[schema.fields.length];
+        if (columns.length > 0) {
+            Arrays.fill(skip, true);
+            for (String column : columns) {
+                int i = 0;
+                while (i < skip.length && !schema.fields[i].field.getName().equals(column)) i++;
+                if (i == skip.length) throw new IllegalArgumentException("Unknown column %s of %s".formatted(column, type.getName()));
+                skip[i] = false;
+            }
+        }
+
+        short bbVersion = bb.readShort();
+        if (bbVersion != schema.version) throw new IllegalArgumentException("Version mismatched, deserializing %s, currently %s".formatted(schema.version, bbVersion));
+        int columnCount = bb.readVarInt();
+        if (columnCount != schema.fields.length) throw new IllegalArgumentException("Column count mismatched, deserializing %s, currently %s".formatted(schema.fields.length, columnCount));
+        // Each row takes at least a bit in every column
+        if (columnCount > 0) bb.checkLength((count + 7L) / 8);
+
+        Object[] objs = new Object[count];
+        for (int i = 0; i < count; i++) objs[i] = schema.newInstance();
+
+        boolean attachCache = stringCache != null && bb.getStringCache() == null;
+        if (attachCache) bb.setStringCache(stringCache);
+        try {
+            for (int i = 0; i < columnCount; i++) schema.readColumn(i, objs, bb, skip[i]);
+        } finally {
+            if (attachCache) bb.setStringCache(null);
+        }
+
+        List<T> result = new ArrayList<>(count);
+        for (Object obj : objs) result.add(type.cast(obj));
+        return result;
+    }
+
+    /**
+     * Run writer on target, or on a temporary buffer compressed into target if compression is enabled
+     */
+    private WrappedByteBuffer compressed(WrappedByteBuffer bb, Consumer<WrappedByteBuffer> writer) {
+        BinaryCompression compression = this.compression;
+        if (compression == null) {
+            writer.accept(bb);
+            return bb;
+        }
+
+        WrappedByteBuffer raw = pool.acquire();
+        try {
+            writer.accept(raw);
+            compression.compress(raw, bb);
+        } finally {
+            raw.release();
+        }
+        return bb;
+    }
+
+    /**
+     * Run reader on source, or on a temporary buffer decompressed from source if compression is enabled
+     */
+    private <R> R decompressed(WrappedByteBuffer bb, Function<WrappedByteBuffer, R> reader) {
+        BinaryCompression compression = this.compression;
+        if (compression == null) return reader.apply(bb);
+
+        WrappedByteBuffer raw = pool.acquire();
+        try {
+            compression.decompress(bb, raw);
+            return reader.apply(raw);
+        } finally {
+            raw.release();
+        }
+    }
+
+    /**
+     * Set pool used by {@link #serialize(Object)}
+     * @param pool Buffer pool
+     */
+    public void setPool(WrappedByteBufferPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return Pool used by {@link #serialize(Object)}
+     */
+    public WrappedByteBufferPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Set compression applied to output of serialize, serializeAll and serializeColumnar, and expected by their deserialize methods
+     * <br>
+     * Each call writes a single compressed frame, payloads smaller than the threshold are stored raw
+     * @param compression Compression, or null to disable
+     */
+    public void setCompression(BinaryCompression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * @return Compression of serialized data, or null if disabled
+     */
+    public BinaryCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Set max row count accepted by {@link #deserializeColumnar(Class, WrappedByteBuffer, String...)}, checked before creating instances
+     * @param maxRows Max row count
+     * @see #DEFAULT_MAX_ROWS
+     */
+    public void setMaxRows(int maxRows) {
+        if (maxRows < 0) throw new IllegalArgumentException("Invalid maxRows %s".formatted(maxRows));
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * @return Max row count of a columnar batch
+     */
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * Set compact wire format for all types
+     * <br>
+     * Types annotated with {@link BinarySerialize#compact()} always use compact format
+     * @param compact Target value
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * @return If compact wire format is used for all types
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Set cache for strings decoded in deserialization
+     * <br>
+     * Only applied to buffers without their own cache
+     * @param stringCache Cache, or null to disable
+     * @see WrappedByteBuffer#setStringCache(Utf8StringCache)
+     */
+    public void setStringCache(Utf8StringCache stringCache) {
+        this.stringCache = stringCache;
+    }
+
+    /**
+     * @return Cache for strings decoded in deserialization, or null if disabled
+     */
+    public Utf8StringCache getStringCache() {
+        return stringCache;
+    }
+
+    /**
+     * Track shared references of nested objects
+     * <br>
+     * When enabled, an object reachable through multiple fields is written once and back-referenced by index, which also allows cycles
+     * @param trackReferences Target value
+     */
+    public void setTrackReferences(boolean trackReferences) {
+        this.trackReferences = trackReferences;
+    }
+
+    /**
+     * @return If shared references are tracked
+     */
+    public boolean isTrackReferences() {
+        return trackReferences;
+    }
+
+    /**
+     * Register upgrade of a tagged type, applied when reading data written with specified version
+     * <br>
+     * Upgrades of all versions from the stored one up to the current one are applied in order, replaces previously registered upgrade of the same version
+     * @param type Type annotated with {@link BinarySerialize#tagged()}
+     * @param fromVersion Source version of this upgrade
+     * @param upgrade Upgrade hook
+     * @param <T> Serialized type
+     * @throws IllegalArgumentException Type is not tagged
+     */
+    public <T> void registerUpgrade(Class<T> type, short fromVersion, BinaryUpgrade<T> upgrade) {
+        BinarySerialize annotation = type.getAnnotation(BinarySerialize.class);
+        if (annotation == null || !annotation.tagged())
+            throw new IllegalArgumentException("Type %s is not tagged".formatted(type.getName()));
+        upgrades.computeIfAbsent(type, t -> new ConcurrentSkipListMap<>()).put(fromVersion, upgrade);
     }
 }
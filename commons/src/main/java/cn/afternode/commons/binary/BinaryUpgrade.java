@@ -0,0 +1,18 @@
+package cn.afternode.commons.binary;
+
+import java.util.Map;
+
+/**
+ * Upgrade hook of a tagged {@link BinarySerialize} type, applied lazily when older data is read
+ * @param <T> Serialized type
+ * @see BinarySerializer#registerUpgrade(Class, short, BinaryUpgrade)
+ */
+@FunctionalInterface
+public interface BinaryUpgrade<T> {
+    /**
+     * Migrate an object read from data of the registered version
+     * @param obj Object with known fields read, missing fields keep defaults
+     * @param unknownFields Payloads of fields unknown to current type by tag, length prefixes excluded
+     */
+    void upgrade(T obj, Map<Integer, WrappedByteBuffer> unknownFields);
+}
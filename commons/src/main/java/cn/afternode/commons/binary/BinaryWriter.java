@@ -0,0 +1,175 @@
+package cn.afternode.commons.binary;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Serialize objects to a stream or channel through a fixed-size buffer
+ * <br>
+ * Written bytes are flushed whenever the buffer is full, so memory usage does not depend on size of serialized objects.
+ * The buffer only expands for a single value larger than it, or a tagged field being written.
+ * Compression is not supported, as compressed frames require the whole object to be encoded in memory first.
+ * Output is the same as {@link BinarySerializer#serialize(Object, WrappedByteBuffer)} of each object in order
+ * @see BinaryReader
+ */
+public class BinaryWriter implements Closeable, Flushable {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final BinarySerializer serializer;
+    private final WritableByteChannel channel;
+    private final Flushable flushable;
+    private final StreamingBuffer buffer;
+
+    private BinaryWriter(BinarySerializer serializer, WritableByteChannel channel, Flushable flushable, int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("bufferSize must be positive");
+        this.serializer = serializer;
+        this.channel = channel;
+        this.flushable = flushable;
+        this.buffer = new StreamingBuffer(bufferSize);
+    }
+
+    /**
+     * Write to blocking channel
+     * @param serializer Serializer and its settings
+     * @param channel Target channel
+     * @param bufferSize Buffer size
+     */
+    public BinaryWriter(BinarySerializer serializer, WritableByteChannel channel, int bufferSize) {
+        this(serializer, channel, null, bufferSize);
+    }
+
+    /**
+     * Write to blocking channel with default buffer size
+     * @param serializer Serializer and its settings
+     * @param channel Target channel
+     * @see #DEFAULT_BUFFER_SIZE
+     */
+    public BinaryWriter(BinarySerializer serializer, WritableByteChannel channel) {
+        this(serializer, channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Write to OutputStream
+     * @param serializer Serializer and its settings
+     * @param out Target stream
+     * @param bufferSize Buffer size
+     */
+    public BinaryWriter(BinarySerializer serializer, OutputStream out, int bufferSize) {
+        this(serializer, Channels.newChannel(out), out, bufferSize);
+    }
+
+    /**
+     * Write to OutputStream with default buffer size
+     * @param serializer Serializer and its settings
+     * @param out Target stream
+     * @see #DEFAULT_BUFFER_SIZE
+     */
+    public BinaryWriter(BinarySerializer serializer, OutputStream out) {
+        this(serializer, out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Write to file sequentially from specified position, waiting for each write to complete
+     * @param serializer Serializer and its settings
+     * @param channel Target file
+     * @param position Start position in file
+     * @param bufferSize Buffer size
+     */
+    public BinaryWriter(BinarySerializer serializer, AsynchronousFileChannel channel, long position, int bufferSize) {
+        this(serializer, new AsynchronousFileChannelAdapter(channel, position), null, bufferSize);
+    }
+
+    /**
+     * Write to file sequentially from specified position with default buffer size
+     * @param serializer Serializer and its settings
+     * @param channel Target file
+     * @param position Start position in file
+     * @see #DEFAULT_BUFFER_SIZE
+     */
+    public BinaryWriter(BinarySerializer serializer, AsynchronousFileChannel channel, long position) {
+        this(serializer, channel, position, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Serialize an object
+     * <br>
+     * Bytes may stay in buffer until next flush
+     * @param obj Source object
+     * @return This writer
+     * @throws IOException Error in writing to target
+     * @throws IllegalStateException Serializer has compression enabled
+     * @see BinarySerializer#serialize(Object, WrappedByteBuffer)
+     */
+    public BinaryWriter write(Object obj) throws IOException {
+        if (serializer.getCompression() != null)
+            throw new IllegalStateException("Compression is not supported in streaming mode, it buffers whole objects in memory");
+        try {
+            serializer.serialize(obj, buffer);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return this;
+    }
+
+    /**
+     * Get underlying buffer, for writing raw values between objects
+     * <br>
+     * Absolute offset writes are not supported, as the buffer may be flushed at any relative write
+     * @return Buffer
+     */
+    public WrappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Write all buffered bytes to target
+     * @throws IOException Error in writing to target
+     */
+    @Override
+    public void flush() throws IOException {
+        buffer.drain();
+        if (flushable != null) flushable.flush();
+    }
+
+    /**
+     * Flush and close target
+     * @throws IOException Error in writing to or closing target
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private final class StreamingBuffer extends WrappedByteBuffer {
+        StreamingBuffer(int size) {
+            super(size);
+        }
+
+        @Override
+        void overflow(int len) {
+            if (pins == 0) {
+                try {
+                    drain();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+            grow(len);
+        }
+
+        void drain() throws IOException {
+            while (readerOffset() < writeOffset()) transferTo(channel);
+            compact();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.SerializationException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Encoder of all values of a single field in columnar format
+ * <br>
+ * Integral primitives are delta encoded, with run-length encoding of deltas when values repeat or grow steadily.
+ * Booleans are bit-packed, floating point values are copied in bulk,
+ * strings, enums, boxed primitives and UUIDs are dictionary encoded. Enum dictionaries follow {@link BinarySerialize.EnumFormat} of the field.
+ */
+abstract class ColumnCodec {
+    private static final int DELTA = 0;
+    private static final int DELTA_RLE = 1;
+
+    final FieldCodec field;
+
+    ColumnCodec(FieldCodec field) {
+        this.field = field;
+    }
+
+    /**
+     * Write values of this field from all objects
+     */
+    abstract void write(List<?> objs, WrappedByteBuffer bb) throws Throwable;
+
+    /**
+     * Read values and set them to all objects
+     */
+    abstract void read(Object[] objs, WrappedByteBuffer bb) throws Throwable;
+
+    /**
+     * Resolve column codec by field type
+     * @param f Field codec providing accessors
+     * @return Codec
+     * @throws SerializationException Field type cannot be stored in columns
+     */
+    static ColumnCodec of(FieldCodec f) {
+        Class<?> type = f.field.getType();
+        if (type == int.class || type == long.class || type == short.class || type == byte.class || type == char.class)
+            return new IntegralColumn(f);
+        if (type == boolean.class) return new BooleanColumn(f);
+        if (type == float.class) return new FloatColumn(f);
+        if (type == double.class) return new DoubleColumn(f);
+        BinarySerialize.EnumFormat format = f.field.getAnnotation(BinarySerialize.EnumFormat.class);
+        if (format != null && type.isEnum()) return new DictionaryColumn(f, ValueCodec.ofEnum(type, format.value()));
+        if (type == String.class || type.isEnum() || type == UUID.class
+                || type == Integer.class || type == Long.class || type == Short.class || type == Byte.class
+                || type == Character.class || type == Boolean.class || type == Float.class || type == Double.class)
+            return new DictionaryColumn(f, ValueCodec.of(type, f.compact));
+        throw new SerializationException("Field %s is not flat, columnar format supports primitives, boxed types, String, enum and UUID".formatted(f.field));
+    }
+
+    private static final class IntegralColumn extends ColumnCodec {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        IntegralColumn(FieldCodec f) {
+            super(f);
+            this.getter = MethodHandles.explicitCastArguments(f.getter, MethodType.methodType(long.class, Object.class));
+            this.setter = MethodHandles.explicitCastArguments(f.setter, MethodType.methodType(void.class, Object.class, long.class));
+        }
+
+        @Override
+        void write(List<?> objs, WrappedByteBuffer bb) throws Throwable {
+            int count = objs.size();
+            long[] deltas = new long[count];
+            long prev = 0;
+            int runs = 0;
+            for (int i = 0; i < count; i++) {
+                long value = (long) getter.invokeExact(objs.get(i));
+                deltas[i] = value - prev;
+                prev = value;
+                if (i == 0 || deltas[i] != deltas[i - 1]) runs++;
+            }
+
+            if (runs * 2 > count) {
+                bb.writeByte((byte) DELTA);
+                for (long delta : deltas) bb.writeSignedVarLong(delta);
+                return;
+            }
+
+            bb.writeByte((byte) DELTA_RLE);
+            for (int i = 0; i < count; ) {
+                int start = i;
+                while (i < count && deltas[i] == deltas[start]) i++;
+                bb.writeSignedVarLong(deltas[start]);
+                bb.writeVarInt(i - start);
+            }
+        }
+
+        @Override
+        void read(Object[] objs, WrappedByteBuffer bb) throws Throwable {
+            int mode = bb.readByte();
+            long value = 0;
+            if (mode == DELTA) {
+                for (Object obj : objs) {
+                    value += bb.readSignedVarLong();
+                    setter.invokeExact(obj, value);
+                }
+            } else if (mode == DELTA_RLE) {
+                for (int i = 0; i < objs.length; ) {
+                    long delta = bb.readSignedVarLong();
+                    int run = bb.readVarInt();
+                    if (run <= 0 || run > objs.length - i) throw new SerializationException("Bad run length %s of column %s".formatted(run, field.field));
+                    for (int end = i + run; i < end; i++) {
+                        value += delta;
+                        setter.invokeExact(objs[i], value);
+                    }
+                }
+            } else {
+                throw new SerializationException("Unknown encoding %s of column %s".formatted(mode, field.field));
+            }
+        }
+    }
+
+    private static final class BooleanColumn extends ColumnCodec {
+        BooleanColumn(FieldCodec f) {
+            super(f);
+        }
+
+        @Override
+        void write(List<?> objs, WrappedByteBuffer bb) throws Throwable {
+            int bits = 0;
+            for (int i = 0; i < objs.size(); i++) {
+                if ((boolean) field.getter.invokeExact(objs.get(i))) bits |= 1 << (i & 7);
+                if ((i & 7) == 7) {
+                    bb.writeByte((byte) bits);
+                    bits = 0;
+                }
+            }
+            if ((objs.size() & 7) != 0) bb.writeByte((byte) bits);
+        }
+
+        @Override
+        void read(Object[] objs, WrappedByteBuffer bb) throws Throwable {
+            int bits = 0;
+            for (int i = 0; i < objs.length; i++) {
+                if ((i & 7) == 0) bits = bb.readByte();
+                boolean value = (bits & (1 << (i & 7))) != 0;
+                field.setter.invokeExact(objs[i], value);
+            }
+        }
+    }
+
+    private static final class FloatColumn extends ColumnCodec {
+        FloatColumn(FieldCodec f) {
+            super(f);
+        }
+
+        @Override
+        void write(List<?> objs, WrappedByteBuffer bb) throws Throwable {
+            float[] values = new float[objs.size()];
+            for (int i = 0; i < values.length; i++) values[i] = (float) field.getter.invokeExact(objs.get(i));
+            bb.writeFloats(values);
+        }
+
+        @Override
+        void read(Object[] objs, WrappedByteBuffer bb) throws Throwable {
+            float[] values = new float[objs.length];
+            bb.readFloats(values);
+            for (int i = 0; i < values.length; i++) {
+                float value = values[i];
+                field.setter.invokeExact(objs[i], value);
+            }
+        }
+    }
+
+    private static final class DoubleColumn extends ColumnCodec {
+        DoubleColumn(FieldCodec f) {
+            super(f);
+        }
+
+        @Override
+        void write(List<?> objs, WrappedByteBuffer bb) throws Throwable {
+            double[] values = new double[objs.size()];
+            for (int i = 0; i < values.length; i++) values[i] = (double) field.getter.invokeExact(objs.get(i));
+            bb.writeDoubles(values);
+        }
+
+        @Override
+        void read(Object[] objs, WrappedByteBuffer bb) throws Throwable {
+            double[] values = new double[objs.length];
+            bb.readDoubles(values);
+            for (int i = 0; i < values.length; i++) {
+                double value = values[i];
+                field.setter.invokeExact(objs[i], value);
+            }
+        }
+    }
+
+    /**
+     * Distinct values followed by varint index of each row, index 0 is null
+     */
+    private static final class DictionaryColumn extends ColumnCodec {
+        private final ValueCodec codec;
+
+        DictionaryColumn(FieldCodec f, ValueCodec codec) {
+            super(f);
+            this.codec = codec;
+        }
+
+        @Override
+        void write(List<?> objs, WrappedByteBuffer bb) throws Throwable {
+            Map<Object, Integer> indexes = new HashMap<>();
+            List<Object> dictionary = new ArrayList<>();
+            int[] rows = new int[objs.size()];
+            for (int i = 0; i < rows.length; i++) {
+                Object value = (Object) field.getter.invokeExact(objs.get(i));
+                if (value == null) continue;
+
+                Integer index = indexes.putIfAbsent(value, dictionary.size() + 1);
+                if (index == null) {
+                    dictionary.add(value);
+                    index = dictionary.size();
+                }
+                rows[i] = index;
+            }
+
+            bb.writeVarInt(dictionary.size());
+            for (Object value : dictionary) codec.write(bb, value, BinaryContext.UNTRACKED);
+            for (int row : rows) bb.writeVarInt(row);
+        }
+
+        @Override
+        void read(Object[] objs, WrappedByteBuffer bb) throws Throwable {
+            int size = bb.readVarInt();
+            bb.checkLength(size);
+            Object[] dictionary = new Object[size + 1];
+            for (int i = 1; i < dictionary.length; i++) dictionary[i] = codec.read(bb, BinaryContext.UNTRACKED);
+
+            for (Object obj : objs) {
+                int index = bb.readVarInt();
+                if (index < 0 || index >= dictionary.length) throw new SerializationException("Bad dictionary index %s of column %s".formatted(index, field.field));
+                field.setter.invokeExact(obj, dictionary[index]);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package cn.afternode.commons.binary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sequence of WrappedByteBuffer views written together without copying
+ * <br>
+ * Components share content with the added buffers, so one payload can be added to many composites.
+ * Written with a single gathering write per call, e.g. a header buffer followed by a shared payload
+ */
+public class CompositeByteBuffer {
+    private final List<WrappedByteBuffer> components = new ArrayList<>();
+    private int first = 0;
+
+    /**
+     * Add readable bytes (from reader offset to writer offset) of buffer as a component
+     * <br>
+     * Cursors of the added buffer are not changed, later writes to it are not included
+     * @param bb Source buffer
+     * @return This composite
+     */
+    public CompositeByteBuffer add(WrappedByteBuffer bb) {
+        int len = bb.writeOffset() - bb.readerOffset();
+        if (len > 0) components.add(bb.slice(bb.readerOffset(), len));
+        return this;
+    }
+
+    /**
+     * Add readable bytes of buffers as components
+     * @param bbs Source buffers
+     * @return This composite
+     * @see #add(WrappedByteBuffer)
+     */
+    public CompositeByteBuffer add(WrappedByteBuffer... bbs) {
+        for (WrappedByteBuffer bb : bbs) add(bb);
+        return this;
+    }
+
+    /**
+     * @return Total length of bytes not written yet
+     */
+    public long readableBytes() {
+        long total = 0;
+        for (int i = first; i < components.size(); i++) {
+            WrappedByteBuffer c = components.get(i);
+            total += c.writeOffset() - c.readerOffset();
+        }
+        return total;
+    }
+
+    /**
+     * @return If all components are written
+     */
+    public boolean isEmpty() {
+        return first >= components.size();
+    }
+
+    /**
+     * @return Views of components not fully written yet
+     */
+    public List<WrappedByteBuffer> components() {
+        return Collections.unmodifiableList(components.subList(first, components.size()));
+    }
+
+    /**
+     * Write remaining bytes of all components to channel with gathering writes
+     * <br>
+     * Stops when all bytes are written or the channel accepts no more bytes, written bytes are consumed from components
+     * @param channel Target channel
+     * @return Written length
+     * @throws IOException Error in GatheringByteChannel.write
+     */
+    public long transferTo(GatheringByteChannel channel) throws IOException {
+        int count = components.size() - first;
+        if (count == 0) return 0;
+
+        ByteBuffer[] views = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            WrappedByteBuffer c = components.get(first + i);
+            views[i] = c.view(c.readerOffset(), c.writeOffset() - c.readerOffset());
+        }
+
+        long total = 0;
+        int index = 0;
+        while (index < count) {
+            long n = channel.write(views, index, count - index);
+            if (n <= 0) break;
+            total += n;
+            while (index < count && !views[index].hasRemaining()) index++;
+        }
+
+        for (int i = 0; i < count; i++) components.get(first + i).skip(views[i].position());
+        first += index;
+        if (first == components.size()) clear();
+        return total;
+    }
+
+    /**
+     * Copy remaining bytes of all components into a new heap buffer
+     * @return Copied buffer
+     * @throws IllegalStateException Total length exceeds max buffer size
+     */
+    public WrappedByteBuffer toWrappedByteBuffer() {
+        long len = readableBytes();
+        if (len > WrappedByteBuffer.MAX_SIZE) throw new IllegalStateException("Composite too large: %s".formatted(len));
+
+        WrappedByteBuffer bb = new WrappedByteBuffer((int) len);
+        for (WrappedByteBuffer c : components()) bb.writeBytes(c);
+        return bb;
+    }
+
+    /**
+     * Remove all components
+     */
+    public void clear() {
+        components.clear();
+        first = 0;
+    }
+}
@@ -0,0 +1,25 @@
+package cn.afternode.commons.binary;
+
+/**
+ * Wire encoding of enum values
+ * @see WrappedByteBuffer#writeEnum(Enum, EnumEncoding)
+ * @see BinarySerialize.EnumFormat
+ */
+public enum EnumEncoding {
+    /**
+     * Ordinal as a single byte, up to 256 constants
+     */
+    BYTE,
+    /**
+     * Ordinal as short
+     */
+    SHORT,
+    /**
+     * Ordinal as unsigned varint
+     */
+    VARINT,
+    /**
+     * Constant name as varint-prefixed UTF-8, survives reordering of constants
+     */
+    NAME
+}
@@ -0,0 +1,88 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.SerializationException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cached constants of an enum type
+ * <br>
+ * {@link Class#getEnumConstants()} clones the array on every call, this table is computed once per type
+ */
+final class EnumTable {
+    private static final ClassValue<EnumTable> CACHE = new ClassValue<>() {
+        @Override
+        protected EnumTable computeValue(Class<?> type) {
+            return type.isEnum() ? new EnumTable(type) : null;
+        }
+    };
+
+    final Class<?> type;
+    final Object[] constants;
+    private final Map<String, Object> byName;
+
+    private EnumTable(Class<?> type) {
+        this.type = type;
+        this.constants = type.getEnumConstants();
+        this.byName = new HashMap<>(constants.length * 2);
+        for (Object c : constants) byName.put(((Enum<?>) c).name(), c);
+    }
+
+    /**
+     * @param type Enum type
+     * @return Cached table, or null if the type is not an enum
+     */
+    static EnumTable of(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    /**
+     * @param ordinal Ordinal
+     * @return Constant
+     * @throws SerializationException Ordinal out of range
+     */
+    Object byOrdinal(int ordinal) {
+        Object[] c = this.constants;
+        if (ordinal < 0 || ordinal >= c.length) throw new SerializationException("Ordinal %s out of range of %s".formatted(ordinal, type.getName()));
+        return c[ordinal];
+    }
+
+    /**
+     * @param name Constant name
+     * @return Constant
+     * @throws SerializationException No constant with that name
+     */
+    Object byName(String name) {
+        Object e = byName.get(name);
+        if (e == null) throw new SerializationException("No constant %s in %s".formatted(name, type.getName()));
+        return e;
+    }
+
+    /**
+     * Write constant with specified encoding
+     */
+    static void write(WrappedByteBuffer bb, Enum<?> e, EnumEncoding encoding) {
+        switch (encoding) {
+            case BYTE -> {
+                if (e.ordinal() > 0xFF) throw new SerializationException("Ordinal of %s exceeds byte width".formatted(e));
+                bb.writeByte((byte) e.ordinal());
+            }
+            case SHORT -> bb.writeShort((short) e.ordinal());
+            case VARINT -> bb.writeVarInt(e.ordinal());
+            case NAME -> bb.writeVarUtf(e.name());
+        }
+    }
+
+    /**
+     * Read constant with specified encoding
+     */
+    Object read(WrappedByteBuffer bb, EnumEncoding encoding) {
+        return switch (encoding) {
+            case BYTE -> byOrdinal(bb.readByte() & 0xFF);
+            case SHORT -> byOrdinal(bb.readShort());
+            case VARINT -> byOrdinal(bb.readVarInt());
+            case NAME -> byName(bb.readVarUtf());
+        };
+    }
+}
@@ -0,0 +1,305 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.FieldAccessException;
+import cn.afternode.commons.serialization.SerializationException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Pre-resolved writer/reader of a single field
+ * <br>
+ * Field access goes through MethodHandles adapted to primitive-typed signatures, so reading or writing primitives does not box.
+ * Handles are bound to a generated {@link BinaryCodec} when present, otherwise unreflected from the field.
+ */
+abstract class FieldCodec {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    final Field field;
+    final MethodHandle getter;
+    final MethodHandle setter;
+    final boolean compact;
+
+    /**
+     * @param field Target field
+     * @param getter Getter with type (Object)type
+     * @param setter Setter with type (Object, type)void
+     * @param compact Use compact wire format
+     */
+    FieldCodec(Field field, MethodHandle getter, MethodHandle setter, boolean compact) {
+        this.field = field;
+        this.getter = getter;
+        this.setter = setter;
+        this.compact = compact;
+    }
+
+    /**
+     * @return Wire type in tagged format
+     * @see WireType
+     */
+    int wireType() {
+        return WireType.LENGTH;
+    }
+
+    /**
+     * Write field value of obj to buffer
+     */
+    abstract void write(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable;
+
+    /**
+     * Read field value from buffer and set to obj
+     */
+    abstract void read(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable;
+
+    /**
+     * Resolve codec by field type
+     * @param f Target field, must be accessible if codec is null
+     * @param codec Generated codec of declaring type, or null to use reflection
+     * @param index Field index in generated codec
+     * @param compact Use compact wire format
+     * @return Codec
+     * @throws SerializationException Unsupported field type
+     * @throws FieldAccessException Field is not accessible
+     */
+    static FieldCodec of(Field f, BinaryCodec<?> codec, int index, boolean compact) {
+        Class<?> type = f.getType();
+        Class<?> access = type.isPrimitive() ? type : Object.class;
+
+        MethodHandle getter;
+        MethodHandle setter;
+        try {
+            if (codec == null) {
+                getter = LOOKUP.unreflectGetter(f).asType(MethodType.methodType(access, Object.class));
+                setter = LOOKUP.unreflectSetter(f).asType(MethodType.methodType(void.class, Object.class, access));
+            } else {
+                String name = access == Object.class ? "" : Character.toUpperCase(access.getName().charAt(0)) + access.getName().substring(1);
+                getter = MethodHandles.insertArguments(
+                        LOOKUP.findVirtual(BinaryCodec.class, "get" + name, MethodType.methodType(access, Object.class, int.class)).bindTo(codec),
+                        1, index);
+                setter = MethodHandles.insertArguments(
+                        LOOKUP.findVirtual(BinaryCodec.class, "set" + name, MethodType.methodType(void.class, Object.class, int.class, access)).bindTo(codec),
+                        1, index);
+            }
+        } catch (IllegalAccessException ex) {
+            throw new FieldAccessException(f, ex);
+        } catch (NoSuchMethodException ex) {
+            throw new SerializationException("Bad codec accessor for %s".formatted(f), ex);
+        }
+
+        if (type == int.class) return new IntCodec(f, getter, setter, compact);
+        if (type == short.class) return new ShortCodec(f, getter, setter, compact);
+        if (type == long.class) return new LongCodec(f, getter, setter, compact);
+        if (type == char.class) return new CharCodec(f, getter, setter, compact);
+        if (type == byte.class) return new ByteCodec(f, getter, setter, compact);
+        if (type == boolean.class) return new BooleanCodec(f, getter, setter, compact);
+        if (type == float.class) return new FloatCodec(f, getter, setter, compact);
+        if (type == double.class) return new DoubleCodec(f, getter, setter, compact);
+        BinarySerialize.EnumFormat format = f.getAnnotation(BinarySerialize.EnumFormat.class);
+        if (format != null) {
+            if (!type.isEnum()) throw new SerializationException("EnumFormat on non-enum field %s".formatted(f));
+            return new ReferenceCodec(f, getter, setter, ValueCodec.ofEnum(type, format.value()), compact);
+        }
+        return new ReferenceCodec(f, getter, setter, ValueCodec.of(f.getGenericType(), compact), compact);
+    }
+
+    private static final class IntCodec extends FieldCodec {
+        IntCodec(Field field, MethodHandle getter, MethodHandle setter, boolean compact) {
+            super(field, getter, setter, compact);
+        }
+
+        @Override
+        int wireType() {
+            return compact ? WireType.VARINT : WireType.FIXED32;
+        }
+
+        @Override
+        void write(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            int value = (int) getter.invokeExact(obj);
+            if (compact) bb.writeSignedVarInt(value);
+            else bb.writeInt(value);
+        }
+
+        @Override
+        void read(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            int value = compact ? bb.readSignedVarInt() : bb.readInt();
+            setter.invokeExact(obj, value);
+        }
+    }
+
+    private static final class ShortCodec extends FieldCodec {
+        ShortCodec(Field field, MethodHandle getter, MethodHandle setter, boolean compact) {
+            super(field, getter, setter, compact);
+        }
+
+        @Override
+        int wireType() {
+            return compact ? WireType.VARINT : WireType.FIXED16;
+        }
+
+        @Override
+        void write(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            short value = (short) getter.invokeExact(obj);
+            if (compact) bb.writeSignedVarInt(value);
+            else bb.writeShort(value);
+        }
+
+        @Override
+        void read(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            short value = compact ? (short) bb.readSignedVarInt() : bb.readShort();
+            setter.invokeExact(obj, value);
+        }
+    }
+
+    private static final class LongCodec extends FieldCodec {
+        LongCodec(Field field, MethodHandle getter, MethodHandle setter, boolean compact) {
+            super(field, getter, setter, compact);
+        }
+
+        @Override
+        int wireType() {
+            return compact ? WireType.VARINT : WireType.FIXED64;
+        }
+
+        @Override
+        void write(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            long value = (long) getter.invokeExact(obj);
+            if (compact) bb.writeSignedVarLong(value);
+            else bb.writeLong(value);
+        }
+
+        @Override
+        void read(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            long value = compact ? bb.readSignedVarLong() : bb.readLong();
+            setter.invokeExact(obj, value);
+        }
+    }
+
+    private static final class CharCodec extends FieldCodec {
+        CharCodec(Field field, MethodHandle getter, MethodHandle setter, boolean compact) {
+            super(field, getter, setter, compact);
+        }
+
+        @Override
+        int wireType() {
+            return compact ? WireType.VARINT : WireType.FIXED16;
+        }
+
+        @Override
+        void write(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            char value = (char) getter.invokeExact(obj);
+            if (compact) bb.writeVarInt(value);
+            else bb.writeChar(value);
+        }
+
+        @Override
+        void read(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            char value = compact ? (char) bb.readVarInt() : bb.readChar();
+            setter.invokeExact(obj, value);
+        }
+    }
+
+    private static final class ByteCodec extends FieldCodec {
+        ByteCodec(Field field, MethodHandle getter, MethodHandle setter, boolean compact) {
+            super(field, getter, setter, compact);
+        }
+
+        @Override
+        int wireType() {
+            return WireType.FIXED8;
+        }
+
+        @Override
+        void write(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            bb.writeByte((byte) getter.invokeExact(obj));
+        }
+
+        @Override
+        void read(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            setter.invokeExact(obj, bb.readByte());
+        }
+    }
+
+    private static final class BooleanCodec extends FieldCodec {
+        BooleanCodec(Field field, MethodHandle getter, MethodHandle setter, boolean compact) {
+            super(field, getter, setter, compact);
+        }
+
+        @Override
+        int wireType() {
+            return WireType.FIXED8;
+        }
+
+        @Override
+        void write(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            bb.writeBoolean((boolean) getter.invokeExact(obj));
+        }
+
+        @Override
+        void read(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            setter.invokeExact(obj, bb.readBoolean());
+        }
+    }
+
+    private static final class FloatCodec extends FieldCodec {
+        FloatCodec(Field field, MethodHandle getter, MethodHandle setter, boolean compact) {
+            super(field, getter, setter, compact);
+        }
+
+        @Override
+        int wireType() {
+            return WireType.FIXED32;
+        }
+
+        @Override
+        void write(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            bb.writeFloat((float) getter.invokeExact(obj));
+        }
+
+        @Override
+        void read(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            setter.invokeExact(obj, bb.readFloat());
+        }
+    }
+
+    private static final class DoubleCodec extends FieldCodec {
+        DoubleCodec(Field field, MethodHandle getter, MethodHandle setter, boolean compact) {
+            super(field, getter, setter, compact);
+        }
+
+        @Override
+        int wireType() {
+            return WireType.FIXED64;
+        }
+
+        @Override
+        void write(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            bb.writeDouble((double) getter.invokeExact(obj));
+        }
+
+        @Override
+        void read(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            setter.invokeExact(obj, bb.readDouble());
+        }
+    }
+
+    private static final class ReferenceCodec extends FieldCodec {
+        private final ValueCodec codec;
+
+        ReferenceCodec(Field field, MethodHandle getter, MethodHandle setter, ValueCodec codec, boolean compact) {
+            super(field, getter, setter, compact);
+            this.codec = codec;
+        }
+
+        @Override
+        void write(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            codec.write(bb, (Object) getter.invokeExact(obj), ctx);
+        }
+
+        @Override
+        void read(Object obj, WrappedByteBuffer bb, BinaryContext ctx) throws Throwable {
+            setter.invokeExact(obj, codec.read(bb, ctx));
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package cn.afternode.commons.binary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * UUID-keyed store of serialized records kept outside Java heap
+ * <br>
+ * Records are encoded with {@link BinarySerializer} and appended to fixed-size slabs of direct or memory-mapped memory.
+ * Keys are indexed by an open-addressing hash table of primitive arrays, so the heap holds no object per record.
+ * Replaced and removed records leave garbage in slabs, which is reclaimed by {@link #compact(double)}.
+ * Safe for concurrent use, reads run in parallel and writes are exclusive
+ * @param <T> Record type
+ */
+public class OffHeapRecordStore<T> implements Closeable {
+    /**
+     * Default slab size, 4 MiB
+     */
+    public static final int DEFAULT_SLAB_SIZE = 1 << 22;
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final int NO_SLAB = -1;
+
+    private final BinarySerializer serializer;
+    private final Class<T> type;
+    private final int slabSize;
+    private final Path directory;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Index, slots with slab -1 are empty
+    private long[] keyMost = new long[INITIAL_CAPACITY];
+    private long[] keyLeast = new long[INITIAL_CAPACITY];
+    private int[] slabs = filled(INITIAL_CAPACITY);
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // Slabs, released slots are null and reused
+    private final List<Slab> slabList = new ArrayList<>();
+    private Slab current = null;
+    private boolean closed = false;
+
+    /**
+     * Create store with direct memory slabs
+     * @param serializer Serializer encoding records
+     * @param type Record type
+     * @param slabSize Size of each slab, records larger than this get a dedicated slab
+     */
+    public OffHeapRecordStore(BinarySerializer serializer, Class<T> type, int slabSize) {
+        this(serializer, type, slabSize, null);
+    }
+
+    /**
+     * Create store with slabs mapped from temporary files in directory, or direct memory if directory is null
+     * <br>
+     * Mapped slabs are paged by the OS, so the store may exceed available memory. Files are deleted when slabs are released
+     * @param serializer Serializer encoding records
+     * @param type Record type
+     * @param slabSize Size of each slab, records larger than this get a dedicated slab
+     * @param directory Directory of slab files, or null
+     */
+    public OffHeapRecordStore(BinarySerializer serializer, Class<T> type, int slabSize, Path directory) {
+        if (slabSize <= 0) throw new IllegalArgumentException("slabSize must be positive");
+        this.serializer = serializer;
+        this.type = type;
+        this.slabSize = slabSize;
+        this.directory = directory;
+    }
+
+    /**
+     * Create store with direct memory slabs of default size
+     * @param serializer Serializer encoding records
+     * @param type Record type
+     * @see #DEFAULT_SLAB_SIZE
+     */
+    public OffHeapRecordStore(BinarySerializer serializer, Class<T> type) {
+        this(serializer, type, DEFAULT_SLAB_SIZE, null);
+    }
+
+    /**
+     * Serialize record and store it, replacing existing record of the key
+     * @param key Record key
+     * @param record Record
+     * @throws UncheckedIOException Error in creating mapped slab
+     */
+    public void put(UUID key, T record) {
+        WrappedByteBuffer encoded = serializer.serialize(record);
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            int len = encoded.writeOffset() - encoded.readerOffset();
+            Slab slab = allocate(len);
+            int off = slab.buffer.writeOffset();
+            slab.buffer.writeBytes(encoded);
+            slab.live += len;
+
+            int slot = find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+            if (slot >= 0) {
+                free(slot);
+            } else {
+                if ((size + 1) * 4L > slabs.length * 3L) rehash(slabs.length << 1);
+                slot = insertSlot(key.getMostSignificantBits(), key.getLeastSignificantBits());
+                size++;
+            }
+            slabs[slot] = slab.index;
+            offsets[slot] = off;
+            lengths[slot] = len;
+        } finally {
+            lock.writeLock().unlock();
+            encoded.release();
+        }
+    }
+
+    /**
+     * Deserialize record of key
+     * @param key Record key
+     * @return Record, or null if not found
+     */
+    public T get(UUID key) {
+        return read(key, bb -> serializer.deserialize(type, bb));
+    }
+
+    /**
+     * Access serialized record of key without deserializing it, e.g. with a {@link BinaryLayout}
+     * <br>
+     * The view is only valid inside the function, as compaction may move the record afterwards
+     * @param key Record key
+     * @param function Function reading the view
+     * @return Result of function, or null if not found
+     * @param <R> Result type
+     */
+    public <R> R read(UUID key, Function<WrappedByteBuffer, R> function) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            int slot = find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+            if (slot < 0) return null;
+            return function.apply(slabList.get(slabs[slot]).buffer.slice(offsets[slot], lengths[slot]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param key Record key
+     * @return If a record of key is stored
+     */
+    public boolean contains(UUID key) {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            return find(key.getMostSignificantBits(), key.getLeastSignificantBits()) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove record of key
+     * @param key Record key
+     * @return If a record was removed
+     */
+    public boolean remove(UUID key) {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            int slot = find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+            if (slot < 0) return false;
+            free(slot);
+            deleteSlot(slot);
+            size--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Move live records out of slabs with less than threshold of their used bytes alive, then release these slabs
+     * @param threshold Live ratio, from 0 to 1
+     * @return Released slab count
+     * @throws UncheckedIOException Error in creating or deleting mapped slab
+     */
+    public int compact(double threshold) {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            boolean[] sparse = new boolean[slabList.size()];
+            int count = 0;
+            for (Slab slab : slabList) {
+                if (slab == null || slab == current) continue;
+                if (slab.live < slab.buffer.writeOffset() * threshold) {
+                    sparse[slab.index] = true;
+                    count++;
+                }
+            }
+            if (count == 0) return 0;
+
+            for (int slot = 0; slot < slabs.length; slot++) {
+                if (slabs[slot] == NO_SLAB || !sparse[slabs[slot]]) continue;
+
+                Slab from = slabList.get(slabs[slot]);
+                int len = lengths[slot];
+                Slab to = allocate(len);
+                int off = to.buffer.writeOffset();
+                to.buffer.writeBytes(from.buffer.slice(offsets[slot], len));
+                to.live += len;
+                from.live -= len;
+                slabs[slot] = to.index;
+                offsets[slot] = off;
+            }
+
+            for (int i = 0; i < sparse.length; i++) {
+                if (sparse[i]) release(slabList.get(i));
+            }
+            return count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Release slabs with less than half of their used bytes alive
+     * @return Released slab count
+     * @see #compact(double)
+     */
+    public int compact() {
+        return compact(0.5);
+    }
+
+    /**
+     * @return Stored record count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Total length of live records
+     */
+    public long liveBytes() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (Slab slab : slabList) if (slab != null) total += slab.live;
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Total capacity of allocated slabs
+     */
+    public long allocatedBytes() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (Slab slab : slabList) if (slab != null) total += slab.buffer.capacity();
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all records and release all slabs
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            releaseAll();
+            keyMost = new long[INITIAL_CAPACITY];
+            keyLeast = new long[INITIAL_CAPACITY];
+            slabs = filled(INITIAL_CAPACITY);
+            offsets = new int[INITIAL_CAPACITY];
+            lengths = new int[INITIAL_CAPACITY];
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Release all slabs, the store is not usable after closing
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) return;
+            clear();
+            closed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("Store closed");
+    }
+
+    private static int[] filled(int capacity) {
+        int[] arr = new int[capacity];
+        Arrays.fill(arr, NO_SLAB);
+        return arr;
+    }
+
+    private static int hash(long most, long least) {
+        long h = most ^ least;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * @return Slot of key, or -1 if not found
+     */
+    private int find(long most, long least) {
+        int mask = slabs.length - 1;
+        for (int i = hash(most, least) & mask; slabs[i] != NO_SLAB; i = (i + 1) & mask) {
+            if (keyMost[i] == most && keyLeast[i] == least) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return First empty slot of key
+     */
+    private int insertSlot(long most, long least) {
+        int mask = slabs.length - 1;
+        int i = hash(most, least) & mask;
+        while (slabs[i] != NO_SLAB) i = (i + 1) & mask;
+        keyMost[i] = most;
+        keyLeast[i] = least;
+        return i;
+    }
+
+    /**
+     * Empty a slot, shifting later entries of the probe sequence back so no tombstones are needed
+     */
+    private void deleteSlot(int slot) {
+        int mask = slabs.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; slabs[i] != NO_SLAB; i = (i + 1) & mask) {
+            int home = hash(keyMost[i], keyLeast[i]) & mask;
+            // Move entry into hole if its home is not inside (hole, i]
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keyMost[hole] = keyMost[i];
+                keyLeast[hole] = keyLeast[i];
+                slabs[hole] = slabs[i];
+                offsets[hole] = offsets[i];
+                lengths[hole] = lengths[i];
+                hole = i;
+            }
+        }
+        slabs[hole] = NO_SLAB;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldMost = keyMost;
+        long[] oldLeast = keyLeast;
+        int[] oldSlabs = slabs;
+        int[] oldOffsets = offsets;
+        int[] oldLengths = lengths;
+
+        keyMost = new long[capacity];
+        keyLeast = new long[capacity];
+        slabs = filled(capacity);
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        for (int i = 0; i < oldSlabs.length; i++) {
+            if (oldSlabs[i] == NO_SLAB) continue;
+            int slot = insertSlot(oldMost[i], oldLeast[i]);
+            slabs[slot] = oldSlabs[i];
+            offsets[slot] = oldOffsets[i];
+            lengths[slot] = oldLengths[i];
+        }
+    }
+
+    /**
+     * Mark record in slot as garbage, and release its slab if nothing is alive in it
+     */
+    private void free(int slot) {
+        Slab slab = slabList.get(slabs[slot]);
+        slab.live -= lengths[slot];
+        if (slab.live == 0 && slab != current) release(slab);
+    }
+
+    /**
+     * @return Slab with at least len bytes writable
+     */
+    private Slab allocate(int len) {
+        if (current != null && current.buffer.capacity() - current.buffer.writeOffset() >= len) return current;
+
+        Slab slab = createSlab(Math.max(len, slabSize));
+        if (len <= slabSize) {
+            if (current != null && current.live == 0) release(current);
+            current = slab;
+        }
+        return slab;
+    }
+
+    private Slab createSlab(int capacity) {
+        WrappedByteBuffer buffer;
+        Path file = null;
+        if (directory == null) {
+            buffer = WrappedByteBuffer.direct(capacity, false);
+        } else {
+            // Unique names, so files left by a crashed or concurrent store in the same directory do not collide
+            try {
+                file = Files.createTempFile(directory, "slab-", ".bin");
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Unable to create slab in %s".formatted(directory), ex);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = WrappedByteBuffer.map(channel, FileChannel.MapMode.READ_WRITE, 0, capacity);
+                buffer.resetWriter();
+            } catch (IOException ex) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException suppressed) {
+                    ex.addSuppressed(suppressed);
+                }
+                throw new UncheckedIOException("Unable to create slab %s".formatted(file), ex);
+            }
+        }
+
+        int index = slabList.indexOf(null);
+        if (index < 0) {
+            index = slabList.size();
+            slabList.add(null);
+        }
+        Slab slab = new Slab(index, buffer, file);
+        slabList.set(index, slab);
+        return slab;
+    }
+
+    private void release(Slab slab) {
+        slabList.set(slab.index, null);
+        if (slab == current) current = null;
+        if (slab.file != null) {
+            try {
+                Files.deleteIfExists(slab.file);
+            } catch (IOException ex) {
+                // Mapped files cannot be deleted on some platforms until unmapped
+                slab.file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private void releaseAll() {
+        for (Slab slab : slabList) if (slab != null) release(slab);
+        slabList.clear();
+        current = null;
+    }
+
+    private static final class Slab {
+        final int index;
+        final WrappedByteBuffer buffer;
+        final Path file;
+        long live = 0;
+
+        Slab(int index, WrappedByteBuffer buffer, Path file) {
+            this.index = index;
+            this.buffer = buffer;
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package cn.afternode.commons.binary;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size cache of decoded UTF-8 strings, keyed by encoded bytes
+ * <br>
+ * Lookups compare bytes in place, so a hit returns the cached String without allocation.
+ * Colliding entries simply replace each other. Safe for concurrent use.
+ */
+public class Utf8StringCache {
+    private final Entry[] entries;
+    private final int mask;
+    private final int maxLength;
+
+    /**
+     * @param size Slot count, rounded up to power of two
+     * @param maxLength Strings with longer encoded length are not cached
+     */
+    public Utf8StringCache(int size, int maxLength) {
+        int n = Integer.highestOneBit(Math.max(size, 1) - 1) << 1;
+        if (n <= 0) n = 1;
+        this.entries = new Entry[n];
+        this.mask = n - 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Create with 1024 slots and 64 bytes max length
+     */
+    public Utf8StringCache() {
+        this(1024, 64);
+    }
+
+    String lookup(ByteBuffer buf, int off, int len) {
+        if (len > maxLength) return null;
+
+        int hash = hash(buf, off, len);
+        Entry e = entries[hash & mask];
+        if (e == null || e.hash != hash || e.bytes.length != len) return null;
+
+        byte[] bytes = e.bytes;
+        for (int i = 0; i < len; i++) {
+            if (bytes[i] != buf.get(off + i)) return null;
+        }
+        return e.value;
+    }
+
+    void store(ByteBuffer buf, int off, int len, String value) {
+        if (len > maxLength) return;
+
+        byte[] bytes = new byte[len];
+        buf.get(off, bytes);
+        int hash = hash(buf, off, len);
+        entries[hash & mask] = new Entry(hash, bytes, value);
+    }
+
+    /**
+     * Remove all cached strings
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length; i++) entries[i] = null;
+    }
+
+    /**
+     * @return Max encoded length of cached strings
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    private static int hash(ByteBuffer buf, int off, int len) {
+        int h = len;
+        for (int i = 0; i < len; i++) {
+            h = 31 * h + buf.get(off + i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Entry {
+        final int hash;
+        final byte[] bytes;
+        final String value;
+
+        Entry(int hash, byte[] bytes, String value) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.value = value;
+        }
+    }
+}
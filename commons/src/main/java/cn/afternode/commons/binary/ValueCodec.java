@@ -0,0 +1,643 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.DeserializeInstantiationException;
+import cn.afternode.commons.serialization.SerializationException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+/**
+ * Writer/reader of a reference-typed value
+ */
+abstract class ValueCodec {
+    /**
+     * Write value to buffer
+     */
+    abstract void write(WrappedByteBuffer bb, Object value, BinaryContext ctx);
+
+    /**
+     * Read value from buffer
+     */
+    abstract Object read(WrappedByteBuffer bb, BinaryContext ctx);
+
+    /**
+     * Resolve codec by value type
+     * <br>
+     * String and enum values are written as-is, other types are prefixed with a null marker byte
+     * @param type Value type
+     * @param compact Use compact wire format
+     * @return Codec
+     * @throws SerializationException Unsupported type
+     */
+    static ValueCodec of(Class<?> type, boolean compact) {
+        if (type == String.class) return compact ? VAR_STRING : STRING;
+        if (type.isEnum()) return new EnumCodec(EnumTable.of(type), compact ? EnumEncoding.VARINT : EnumEncoding.SHORT);
+        if (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type))
+            throw new SerializationException("Raw type %s, element types must be declared".formatted(type.getName()));
+
+        ValueCodec codec = nonNull(type, compact);
+        if (codec != null) return new NullableCodec(codec);
+        if (type.isAnnotationPresent(BinarySerialize.class)) return new ObjectCodec(type, compact);
+        throw new SerializationException("Unsupported type %s, nested types must be annotated with @BinarySerialize".formatted(type.getName()));
+    }
+
+    /**
+     * Resolve codec by generic type
+     * <br>
+     * Collections and maps are resolved with their declared type arguments, and written with a null marker and length prefix
+     * @param type Value type
+     * @param compact Use compact wire format
+     * @return Codec
+     * @throws SerializationException Unsupported type
+     */
+    static ValueCodec of(Type type, boolean compact) {
+        if (type instanceof Class<?> c) return of(c, compact);
+        if (type instanceof ParameterizedType pt && pt.getRawType() instanceof Class<?> raw) {
+            Type[] args = pt.getActualTypeArguments();
+            if (Collection.class.isAssignableFrom(raw))
+                return new NullableCodec(new CollectionCodec(collectionFactory(raw), element(args[0], compact), compact));
+            if (Map.class.isAssignableFrom(raw))
+                return new NullableCodec(new MapCodec(mapFactory(raw), element(args[0], compact), element(args[1], compact), compact));
+            return of(raw, compact);
+        }
+        throw new SerializationException("Unsupported type %s".formatted(type.getTypeName()));
+    }
+
+    /**
+     * Resolve codec for elements of collections and arrays, which are always nullable
+     */
+    private static ValueCodec element(Type type, boolean compact) {
+        ValueCodec codec = of(type, compact);
+        if (type == String.class || (type instanceof Class<?> c && c.isEnum())) return new NullableCodec(codec);
+        return codec;
+    }
+
+    static void writeLength(WrappedByteBuffer bb, int length, boolean compact) {
+        if (compact) bb.writeVarInt(length);
+        else bb.writeInt(length);
+    }
+
+    static int readLength(WrappedByteBuffer bb, boolean compact) {
+        return compact ? bb.readVarInt() : bb.readInt();
+    }
+
+    /**
+     * Read length prefix and check it against readable bytes before allocating for it
+     * @param elementSize Minimum encoded size of each element
+     * @throws SerializationException Length is negative or longer than readable bytes
+     */
+    static int readLength(WrappedByteBuffer bb, boolean compact, int elementSize) {
+        int length = readLength(bb, compact);
+        bb.checkLength((long) length * elementSize);
+        return length;
+    }
+
+    private static ValueCodec nonNull(Class<?> type, boolean compact) {
+        if (type == Integer.class) return compact ? VAR_INT : INT;
+        if (type == Short.class) return compact ? VAR_SHORT : SHORT;
+        if (type == Long.class) return compact ? VAR_LONG : LONG;
+        if (type == Character.class) return compact ? VAR_CHAR : CHAR;
+        if (type == Byte.class) return BYTE;
+        if (type == Boolean.class) return BOOLEAN;
+        if (type == Float.class) return FLOAT;
+        if (type == Double.class) return DOUBLE;
+        if (type == UUID.class) return UUID_CODEC;
+        if (type == byte[].class) return compact ? VAR_BYTES : BYTES;
+        if (type.isArray()) {
+            Class<?> component = type.getComponentType();
+            if (component.isPrimitive()) return new PrimitiveArrayCodec(component, compact);
+            return new ArrayCodec(component, element(component, compact), compact);
+        }
+        return null;
+    }
+
+    private static final ValueCodec STRING = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeUtf((String) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readUtf();
+        }
+    };
+
+    private static final ValueCodec VAR_STRING = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeVarUtf((String) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readVarUtf();
+        }
+    };
+
+    private static final ValueCodec INT = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeInt((Integer) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readInt();
+        }
+    };
+
+    private static final ValueCodec VAR_INT = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeSignedVarInt((Integer) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readSignedVarInt();
+        }
+    };
+
+    private static final ValueCodec SHORT = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeShort((Short) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readShort();
+        }
+    };
+
+    private static final ValueCodec VAR_SHORT = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeSignedVarInt((Short) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return (short) bb.readSignedVarInt();
+        }
+    };
+
+    private static final ValueCodec LONG = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeLong((Long) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readLong();
+        }
+    };
+
+    private static final ValueCodec VAR_LONG = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeSignedVarLong((Long) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readSignedVarLong();
+        }
+    };
+
+    private static final ValueCodec CHAR = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeChar((Character) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readChar();
+        }
+    };
+
+    private static final ValueCodec VAR_CHAR = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeVarInt((Character) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return (char) bb.readVarInt();
+        }
+    };
+
+    private static final ValueCodec BYTE = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeByte((Byte) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readByte();
+        }
+    };
+
+    private static final ValueCodec BOOLEAN = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeBoolean((Boolean) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readBoolean();
+        }
+    };
+
+    private static final ValueCodec FLOAT = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeFloat((Float) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readFloat();
+        }
+    };
+
+    private static final ValueCodec DOUBLE = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeDouble((Double) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readDouble();
+        }
+    };
+
+    private static final ValueCodec UUID_CODEC = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeUuid((UUID) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readUuid();
+        }
+    };
+
+    private static final ValueCodec BYTES = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            bb.writeByteArray((byte[]) value);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readByteArray();
+        }
+    };
+
+    private static final ValueCodec VAR_BYTES = new ValueCodec() {
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            byte[] bytes = (byte[]) value;
+            bb.writeVarInt(bytes.length);
+            bb.writeBytes(bytes);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            int length = bb.readVarInt();
+            bb.checkLength(length);
+            byte[] bytes = new byte[length];
+            bb.readBytes(bytes);
+            return bytes;
+        }
+    };
+
+    /**
+     * Resolve codec of enum type with specified encoding
+     * @param type Enum type
+     * @param encoding Wire encoding
+     * @return Codec, values are written as-is
+     */
+    static ValueCodec ofEnum(Class<?> type, EnumEncoding encoding) {
+        return new EnumCodec(EnumTable.of(type), encoding);
+    }
+
+    private static final class EnumCodec extends ValueCodec {
+        private final EnumTable table;
+        private final EnumEncoding encoding;
+
+        EnumCodec(EnumTable table, EnumEncoding encoding) {
+            this.table = table;
+            this.encoding = encoding;
+        }
+
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            EnumTable.write(bb, (Enum<?>) value, encoding);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return table.read(bb, encoding);
+        }
+    }
+
+    /**
+     * Prefix value with a byte marker, 0 for null and 1 for present
+     */
+    private static final class NullableCodec extends ValueCodec {
+        private final ValueCodec codec;
+
+        NullableCodec(ValueCodec codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            if (value == null) {
+                bb.writeByte((byte) 0);
+            } else {
+                bb.writeByte((byte) 1);
+                codec.write(bb, value, ctx);
+            }
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            return bb.readByte() == 0 ? null : codec.read(bb, ctx);
+        }
+    }
+
+    /**
+     * Primitive arrays are bulk copied through typed buffer views after a length prefix
+     */
+    private static final class PrimitiveArrayCodec extends ValueCodec {
+        private final Class<?> component;
+        private final int size;
+        private final boolean compact;
+
+        PrimitiveArrayCodec(Class<?> component, boolean compact) {
+            this.component = component;
+            this.compact = compact;
+            if (component == long.class || component == double.class) size = 8;
+            else if (component == int.class || component == float.class) size = 4;
+            else if (component == short.class || component == char.class) size = 2;
+            else size = 1;
+        }
+
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            writeLength(bb, Array.getLength(value), compact);
+            if (value instanceof int[] a) bb.writeInts(a);
+            else if (value instanceof long[] a) bb.writeLongs(a);
+            else if (value instanceof short[] a) bb.writeShorts(a);
+            else if (value instanceof char[] a) bb.writeChars(a);
+            else if (value instanceof float[] a) bb.writeFloats(a);
+            else if (value instanceof double[] a) bb.writeDoubles(a);
+            else if (value instanceof boolean[] a) {
+                for (boolean b : a) bb.writeBoolean(b);
+            }
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            int length = readLength(bb, compact, size);
+            Object value = Array.newInstance(component, length);
+            if (value instanceof int[] a) bb.readInts(a);
+            else if (value instanceof long[] a) bb.readLongs(a);
+            else if (value instanceof short[] a) bb.readShorts(a);
+            else if (value instanceof char[] a) bb.readChars(a);
+            else if (value instanceof float[] a) bb.readFloats(a);
+            else if (value instanceof double[] a) bb.readDoubles(a);
+            else if (value instanceof boolean[] a) {
+                for (int i = 0; i < length; i++) a[i] = bb.readBoolean();
+            }
+            return value;
+        }
+    }
+
+    private static final class ArrayCodec extends ValueCodec {
+        private final Class<?> component;
+        private final ValueCodec element;
+        private final boolean compact;
+
+        ArrayCodec(Class<?> component, ValueCodec element, boolean compact) {
+            this.component = component;
+            this.element = element;
+            this.compact = compact;
+        }
+
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            Object[] array = (Object[]) value;
+            writeLength(bb, array.length, compact);
+            for (Object o : array) element.write(bb, o, ctx);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            Object[] array = (Object[]) Array.newInstance(component, readLength(bb, compact, 1));
+            for (int i = 0; i < array.length; i++) array[i] = element.read(bb, ctx);
+            return array;
+        }
+    }
+
+    private static final class CollectionCodec extends ValueCodec {
+        private final IntFunction<Collection<Object>> factory;
+        private final ValueCodec element;
+        private final boolean compact;
+
+        CollectionCodec(IntFunction<Collection<Object>> factory, ValueCodec element, boolean compact) {
+            this.factory = factory;
+            this.element = element;
+            this.compact = compact;
+        }
+
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            Collection<?> collection = (Collection<?>) value;
+            writeLength(bb, collection.size(), compact);
+            for (Object o : collection) element.write(bb, o, ctx);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            int length = readLength(bb, compact, 1);
+            Collection<Object> collection = factory.apply(length);
+            for (int i = 0; i < length; i++) collection.add(element.read(bb, ctx));
+            return collection;
+        }
+    }
+
+    private static final class MapCodec extends ValueCodec {
+        private final IntFunction<Map<Object, Object>> factory;
+        private final ValueCodec key;
+        private final ValueCodec value;
+        private final boolean compact;
+
+        MapCodec(IntFunction<Map<Object, Object>> factory, ValueCodec key, ValueCodec value, boolean compact) {
+            this.factory = factory;
+            this.key = key;
+            this.value = value;
+            this.compact = compact;
+        }
+
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            writeLength(bb, map.size(), compact);
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                this.key.write(bb, e.getKey(), ctx);
+                this.value.write(bb, e.getValue(), ctx);
+            }
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            int length = readLength(bb, compact, 2);
+            Map<Object, Object> map = factory.apply(length);
+            for (int i = 0; i < length; i++) map.put(key.read(bb, ctx), value.read(bb, ctx));
+            return map;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static IntFunction<Collection<Object>> collectionFactory(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            if (type.isAssignableFrom(ArrayList.class)) return ArrayList::new;
+            if (type.isAssignableFrom(HashSet.class)) return n -> new HashSet<>(capacity(n));
+            if (type.isAssignableFrom(TreeSet.class)) return n -> new TreeSet<>();
+            if (type.isAssignableFrom(ArrayDeque.class)) return ArrayDeque::new;
+            throw new SerializationException("Unsupported collection type %s".formatted(type.getName()));
+        }
+        MethodHandle constructor = constructor(type);
+        return n -> (Collection<Object>) newInstance(constructor, type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static IntFunction<Map<Object, Object>> mapFactory(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            if (type.isAssignableFrom(HashMap.class)) return n -> new HashMap<>(capacity(n));
+            if (type.isAssignableFrom(TreeMap.class)) return n -> new TreeMap<>();
+            throw new SerializationException("Unsupported map type %s".formatted(type.getName()));
+        }
+        MethodHandle constructor = constructor(type);
+        return n -> (Map<Object, Object>) newInstance(constructor, type);
+    }
+
+    private static int capacity(int size) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) size * 4 / 3 + 1);
+    }
+
+    private static MethodHandle constructor(Class<?> type) {
+        try {
+            Constructor<?> c = type.getDeclaredConstructor();
+            c.trySetAccessible();
+            return MethodHandles.lookup().unreflectConstructor(c).asType(MethodType.methodType(Object.class));
+        } catch (ReflectiveOperationException ex) {
+            throw new SerializationException("Type %s has no accessible no-args constructor".formatted(type.getName()), ex);
+        }
+    }
+
+    private static Object newInstance(MethodHandle constructor, Class<?> type) {
+        try {
+            return (Object) constructor.invokeExact();
+        } catch (Throwable th) {
+            throw new DeserializeInstantiationException("Type %s".formatted(type.getName()), th);
+        }
+    }
+
+    /**
+     * Nested {@link BinarySerialize} object, prefixed with a tag byte
+     * <br>
+     * Tag 0 is null, 1 is an inline object with version header and fields, 2 is a back-reference followed by varint index
+     */
+    private static final class ObjectCodec extends ValueCodec {
+        private static final byte NULL = 0;
+        private static final byte INLINE = 1;
+        private static final byte REFERENCE = 2;
+
+        private final Class<?> type;
+        private final boolean compact;
+
+        /**
+         * Resolved lazily, so self-referencing types don't recurse while building plans
+         */
+        private BinarySchema schema;
+
+        ObjectCodec(Class<?> type, boolean compact) {
+            this.type = type;
+            this.compact = compact;
+        }
+
+        private BinarySchema schema() {
+            BinarySchema s = this.schema;
+            if (s == null) {
+                s = BinarySchema.of(type, compact);
+                this.schema = s;
+            }
+            return s;
+        }
+
+        @Override
+        void write(WrappedByteBuffer bb, Object value, BinaryContext ctx) {
+            if (value == null) {
+                bb.writeByte(NULL);
+                return;
+            }
+            if (value.getClass() != type)
+                throw new SerializationException("Expected %s but got %s, subtypes are not supported".formatted(type.getName(), value.getClass().getName()));
+
+            if (ctx.trackReferences) {
+                int index = ctx.writeReference(value);
+                if (index >= 0) {
+                    bb.writeByte(REFERENCE);
+                    bb.writeVarInt(index);
+                    return;
+                }
+            }
+
+            bb.writeByte(INLINE);
+            schema().write(value, bb, ctx);
+        }
+
+        @Override
+        Object read(WrappedByteBuffer bb, BinaryContext ctx) {
+            byte tag = bb.readByte();
+            if (tag == NULL) return null;
+            if (tag == REFERENCE) return ctx.readReference(bb.readVarInt());
+            if (tag != INLINE) throw new SerializationException("Bad object tag %s".formatted(tag));
+
+            BinarySchema s = schema();
+            Object obj = s.newInstance();
+            if (ctx.trackReferences) ctx.registerRead(obj);
+            s.read(obj, bb, ctx);
+            return obj;
+        }
+    }
+}
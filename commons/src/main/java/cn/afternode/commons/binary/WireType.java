@@ -0,0 +1,66 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.SerializationException;
+
+/**
+ * Wire types of tagged format, stored in the low 3 bits of field keys
+ * <br>
+ * Field key is a varint of {@code (tag << 3) | wireType}, key 0 ends the field list
+ */
+final class WireType {
+    static final int VARINT = 0;
+    static final int FIXED64 = 1;
+    /**
+     * Integer length followed by payload
+     */
+    static final int LENGTH = 2;
+    static final int FIXED32 = 3;
+    static final int FIXED16 = 4;
+    static final int FIXED8 = 5;
+
+    private WireType() {}
+
+    /**
+     * Skip a payload of specified wire type
+     * <br>
+     * The payload is captured before skipping, so it stays valid when streaming buffers refill
+     * @param bb Source buffer
+     * @param wireType Wire type
+     * @param capture Copy the skipped payload
+     * @return Copy of the payload excluding length prefix, or null if not captured
+     * @throws SerializationException Unknown wire type
+     */
+    static WrappedByteBuffer skip(WrappedByteBuffer bb, int wireType, boolean capture) {
+        switch (wireType) {
+            case VARINT -> {
+                long value = bb.readVarLong();
+                return capture ? new WrappedByteBuffer(10).writeVarLong(value) : null;
+            }
+            case LENGTH -> {
+                int len = bb.readInt();
+                bb.checkLength(len);
+                return skipPayload(bb, len, capture);
+            }
+            case FIXED64, FIXED32, FIXED16, FIXED8 -> {
+                return skipPayload(bb, fixedSize(wireType), capture);
+            }
+            default -> throw new SerializationException("Unknown wire type %s".formatted(wireType));
+        }
+    }
+
+    private static WrappedByteBuffer skipPayload(WrappedByteBuffer bb, int len, boolean capture) {
+        bb.ensureReadable(len);
+        WrappedByteBuffer copy = capture ? bb.copy(bb.readerOffset(), len) : null;
+        bb.skip(len);
+        return copy;
+    }
+
+    private static int fixedSize(int wireType) {
+        return switch (wireType) {
+            case FIXED64 -> 8;
+            case FIXED32 -> 4;
+            case FIXED16 -> 2;
+            default -> 1;
+        };
+    }
+}
@@ -1,22 +1,85 @@
 package cn.afternode.commons.binary;
 
+import cn.afternode.commons.serialization.SerializationException;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.UUID;
 
+/**
+ * ByteBuffer wrapper with separate reader and writer offsets
+ * <br>
+ * All access is absolute on the wrapped buffer, its position and limit are never used or changed.
+ * Multibyte values are big-endian regardless of the wrapped buffer's byte order.
+ * Relative writes check capacity once with {@link #ensureWritable(int)}, relative reads call {@link #ensureReadable(int)}
+ */
 public class WrappedByteBuffer {
     public static final int DEFAULT_SIZE = 65535;
 
-    private final ByteBuffer src;
-    
+    /**
+     * Maximum capacity a growable buffer can expand to
+     */
+    public static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final VarHandle SHORT = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle CHAR = MethodHandles.byteBufferViewVarHandle(char[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle FLOAT = MethodHandles.byteBufferViewVarHandle(float[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle DOUBLE = MethodHandles.byteBufferViewVarHandle(double[].class, ByteOrder.BIG_ENDIAN);
+
+    private ByteBuffer src;
+    private final boolean growable;
+
     private int readOff = 0;
     private int writeOff = 0;
 
+    private Utf8StringCache stringCache;
+    private char[] charScratch;
+
+    /**
+     * Nested {@link #pin()} count
+     */
+    int pins = 0;
+
+    WrappedByteBufferPool pool;
+    boolean released = false;
+
     /**
      * Wrap byte buffer
      * @param src ByteBuffer
+     * @param growable Expand the buffer instead of throwing BufferOverflowException when it's full
      */
-    public WrappedByteBuffer(ByteBuffer src) {
+    public WrappedByteBuffer(ByteBuffer src, boolean growable) {
         this.src = src;
+        this.growable = growable;
+    }
+
+    /**
+     * Wrap byte buffer
+     * @param src ByteBuffer
+     */
+    public WrappedByteBuffer(ByteBuffer src) {
+        this(src, false);
+    }
+
+    /**
+     * Create with specified size
+     * @param size Initial size
+     * @param growable Expand the buffer instead of throwing BufferOverflowException when it's full
+     * @see ByteBuffer#allocate(int)
+     */
+    public WrappedByteBuffer(int size, boolean growable) {
+        this(ByteBuffer.allocate(size), growable);
     }
 
     /**
@@ -25,7 +88,7 @@ public class WrappedByteBuffer {
      * @see ByteBuffer#allocate(int) 
      */
     public WrappedByteBuffer(int size) {
-        this(ByteBuffer.allocate(size));
+        this(size, false);
     }
 
     /**
@@ -36,6 +99,155 @@ public class WrappedByteBuffer {
         this(DEFAULT_SIZE);
     }
 
+    /**
+     * Create with direct (off-heap) ByteBuffer
+     * @param size Initial size
+     * @param growable Expand the buffer instead of throwing BufferOverflowException when it's full
+     * @return Created buffer
+     * @see ByteBuffer#allocateDirect(int)
+     */
+    public static WrappedByteBuffer direct(int size, boolean growable) {
+        return new WrappedByteBuffer(ByteBuffer.allocateDirect(size), growable);
+    }
+
+    /**
+     * Create with direct (off-heap) ByteBuffer
+     * @param size Size
+     * @return Created buffer
+     * @see #direct(int, boolean)
+     */
+    public static WrappedByteBuffer direct(int size) {
+        return direct(size, false);
+    }
+
+    /**
+     * Map a region of file into memory
+     * <br>
+     * Writer offset is set to the end of mapped region, so existing content is readable; use {@link #resetWriter()} to overwrite it
+     * @param channel Source file channel
+     * @param mode Map mode
+     * @param position Position in file
+     * @param size Region size
+     * @return Created buffer
+     * @throws IOException Error in FileChannel.map
+     * @see FileChannel#map(FileChannel.MapMode, long, long)
+     */
+    public static WrappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, int size) throws IOException {
+        WrappedByteBuffer bb = new WrappedByteBuffer(channel.map(mode, position, size));
+        bb.writeOff = size;
+        return bb;
+    }
+
+    /**
+     * Make sure len bytes can be written at writer offset
+     * <br>
+     * Growable buffers are expanded to at least double of current capacity
+     * @param len Length to write
+     * @throws BufferOverflowException Not enough space and this buffer is not growable
+     */
+    public void ensureWritable(int len) {
+        int required = writeOff + len;
+        if (required <= src.capacity() && required >= 0) return;
+        overflow(len);
+    }
+
+    /**
+     * Called when len bytes cannot be written at writer offset
+     * <br>
+     * Expands growable buffers, streaming buffers flush written bytes instead
+     * @param len Length to write
+     * @throws BufferOverflowException Not enough space and this buffer is not growable
+     */
+    void overflow(int len) {
+        if (!growable) throw new BufferOverflowException();
+        grow(len);
+    }
+
+    /**
+     * Expand backing buffer so len bytes can be written at writer offset, ignoring growable flag
+     * @param len Length to write
+     * @throws BufferOverflowException Required size exceeds {@link #MAX_SIZE}
+     */
+    void grow(int len) {
+        int required = writeOff + len;
+        if (required <= src.capacity() && required >= 0) return;
+        if (required < 0 || required > MAX_SIZE) throw new BufferOverflowException();
+
+        int newSize = (int) Math.min(MAX_SIZE, Math.max((long) src.capacity() << 1, required));
+        ByteBuffer expanded = src.isDirect() ? ByteBuffer.allocateDirect(newSize) : ByteBuffer.allocate(newSize);
+        expanded.put(0, src, 0, writeOff);
+        this.src = expanded;
+    }
+
+    /**
+     * Make sure len bytes can be read at reader offset
+     * <br>
+     * Streaming buffers refill from their source, other buffers rely on bounds of backing ByteBuffer
+     * @param len Length to read
+     * @see BinaryReader
+     */
+    public void ensureReadable(int len) {
+        if (readOff + len > writeOff) underflow(len);
+    }
+
+    /**
+     * Check a length read from input before allocating or buffering for it
+     * <br>
+     * Plain buffers reject lengths beyond their capacity, so corrupted input cannot force allocations larger than the buffer
+     * @param len Length in bytes
+     * @throws SerializationException Length is negative or longer than bytes that can be read
+     */
+    void checkLength(long len) {
+        int readable = src.capacity() - readOff;
+        if (len < 0 || len > readable) throw new SerializationException("Bad length %s, %s bytes can be read".formatted(len, readable));
+    }
+
+    /**
+     * Called when less than len bytes are readable, no-op for plain buffers
+     * @param len Length to read
+     */
+    void underflow(int len) {
+    }
+
+    /**
+     * Prevent streaming buffers from flushing, so offsets of written bytes stay valid for back-patching
+     * <br>
+     * Must be paired with {@link #unpin()}
+     */
+    void pin() {
+        pins++;
+    }
+
+    void unpin() {
+        pins--;
+    }
+
+    /**
+     * Get NIO view of a region sharing content with this buffer, only valid until the buffer expands
+     * @param off Region offset
+     * @param len Region length
+     * @return View with position 0 and limit len
+     */
+    ByteBuffer view(int off, int len) {
+        return src.slice(off, len);
+    }
+
+    /**
+     * Move writer offset forward after bytes are written through {@link #view(int, int)}
+     * @param len Written length
+     */
+    void advanceWriter(int len) {
+        this.writeOff += len;
+    }
+
+    /**
+     * Move writer offset back to discard written bytes
+     * @param off New writer offset, not greater than current one
+     */
+    void rewindWriter(int off) {
+        this.writeOff = off;
+    }
+
     // Bytes START
     /**
      * Write provided bytes
@@ -43,20 +255,35 @@ public class WrappedByteBuffer {
      * @return This wrapper
      */
     public WrappedByteBuffer writeBytes(byte[] buf) {
-        src.put(buf, writeOff, buf.length);
-        writeOff += buf.length;
-        return this;
+        return writeBytes(buf, 0, buf.length);
     }
 
     /**
      * Write provided bytes with specified offset and length
      * @param buf Source bytes
-     * @param off Target offset
+     * @param off Source offset
      * @param len Write length
      * @return This wrapper
      */
     public WrappedByteBuffer writeBytes(byte[] buf, int off, int len) {
-        src.put(buf, off, len);
+        ensureWritable(len);
+        src.put(writeOff, buf, off, len);
+        writeOff += len;
+        return this;
+    }
+
+    /**
+     * Write readable bytes (from reader offset to writer offset) of another buffer
+     * <br>
+     * Reader offset of the source buffer is not changed
+     * @param buf Source buffer
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeBytes(WrappedByteBuffer buf) {
+        int len = buf.writeOff - buf.readOff;
+        ensureWritable(len);
+        src.put(writeOff, buf.src, buf.readOff, len);
+        writeOff += len;
         return this;
     }
 
@@ -67,7 +294,9 @@ public class WrappedByteBuffer {
      * @param len Length
      */
     public void readBytes(byte[] buf, int off, int len) {
-        src.get(buf, off, len);
+        ensureReadable(len);
+        src.get(readOff, buf, off, len);
+        readOff += len;
     }
 
     /**
@@ -75,9 +304,36 @@ public class WrappedByteBuffer {
      * @param buf Target byte[]
      */
     public void readBytes(byte[] buf) {
-        src.get(buf, readOff, buf.length);
+        ensureReadable(buf.length);
+        src.get(readOff, buf, 0, buf.length);
         readOff += buf.length;
     }
+
+    /**
+     * Write integer length prefix and bytes
+     * @param buf Source bytes
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeByteArray(byte[] buf) {
+        ensureWritable(4 + buf.length);
+        INT.set(this.src, this.writeOff, buf.length);
+        this.src.put(this.writeOff + 4, buf);
+        this.writeOff += 4 + buf.length;
+        return this;
+    }
+
+    /**
+     * Read bytes with integer length prefix
+     * @return Result bytes
+     * @see #writeByteArray(byte[])
+     */
+    public byte[] readByteArray() {
+        int len = readInt();
+        checkLength(len);
+        byte[] buf = new byte[len];
+        readBytes(buf);
+        return buf;
+    }
     // Bytes END
     
     // Integer START
@@ -89,7 +345,7 @@ public class WrappedByteBuffer {
      * @return This wrapper
      */
     public WrappedByteBuffer writeInt(int src, int off) {
-        this.src.putInt(off, src);
+        INT.set(this.src, off, src);
         return this;
     }
 
@@ -99,7 +355,8 @@ public class WrappedByteBuffer {
      * @return This wrapper
      */
     public WrappedByteBuffer writeInt(int src) {
-        this.src.putInt(src);
+        ensureWritable(4);
+        writeInt(src, this.writeOff);
         this.writeOff += 4;
         return this;
     }
@@ -110,7 +367,7 @@ public class WrappedByteBuffer {
      * @return Result integer
      */
     public int readInt(int off) {
-        return this.src.getInt(off);
+        return (int) INT.get(this.src, off);
     }
 
     /**
@@ -118,7 +375,8 @@ public class WrappedByteBuffer {
      * @return Result integer
      */
     public int readInt() {
-        int r = this.src.getInt(readOff);
+        ensureReadable(4);
+        int r = (int) INT.get(this.src, readOff);
         readOff += 4;
         return r;
     }
@@ -133,7 +391,7 @@ public class WrappedByteBuffer {
      * @return This wrapper
      */
     public WrappedByteBuffer writeShort(short src, int off) {
-        this.src.putShort(off, src);
+        SHORT.set(this.src, off, src);
         return this;
     }
 
@@ -143,6 +401,7 @@ public class WrappedByteBuffer {
      * @return This wrapper
      */
     public WrappedByteBuffer writeShort(short src) {
+        ensureWritable(2);
         writeShort(src, this.writeOff);
         this.writeOff += 2;
         return this;
@@ -154,7 +413,7 @@ public class WrappedByteBuffer {
      * @return Result short
      */
     public short readShort(int off) {
-        return this.src.getShort(off);
+        return (short) SHORT.get(this.src, off);
     }
 
     /**
@@ -162,154 +421,1200 @@ public class WrappedByteBuffer {
      * @return Result short
      */
     public short readShort() {
+        ensureReadable(2);
         short r = readShort(this.readOff);
         this.readOff += 2;
         return r;
     }
     // Short END
 
-    // UTF START
+    // Long START
+
     /**
-     * Write UTF-8 encoded string with specified offset
-     * @param src Source string
+     * Write long with specified offset
+     * @param src Source long
      * @param off Target offset
      * @return This wrapper
      */
-    public WrappedByteBuffer writeUtf(String src, int off) {
-        byte[] bytes = src.getBytes(StandardCharsets.UTF_8);
-        this.writeInt(bytes.length, off);
-        off += 4;
-        this.writeBytes(bytes, off, bytes.length);
+    public WrappedByteBuffer writeLong(long src, int off) {
+        LONG.set(this.src, off, src);
         return this;
     }
 
     /**
-     * Write UTF-8 encoded string
-     * @param src Source string
+     * Write long
+     * @param src Source long
      * @return This wrapper
      */
-    public WrappedByteBuffer writeUtf(String src) {
-        byte[] bytes = src.getBytes(StandardCharsets.UTF_8);
-        this.writeInt(bytes.length);
-        this.writeBytes(bytes);
+    public WrappedByteBuffer writeLong(long src) {
+        ensureWritable(8);
+        writeLong(src, this.writeOff);
+        this.writeOff += 8;
         return this;
     }
 
     /**
-     * Read UTF-8 encoded string with specified offset
+     * Read long with specified offset
      * @param off Target offset
-     * @return Result string
+     * @return Result long
      */
-    public String readUtf(int off) {
-        byte[] bytes = new byte[this.readInt(off)];
-        off += 4;
-        this.readBytes(bytes, off, bytes.length);
-        return new String(bytes, StandardCharsets.UTF_8);
+    public long readLong(int off) {
+        return (long) LONG.get(this.src, off);
     }
 
     /**
-     * Read UTF-8 encoded string
-     * @return Result string
+     * Read long
+     * @return Result long
      */
-    public String readUtf() {
-        byte[] bytes = new byte[this.readInt(this.readOff)];
-        this.readBytes(bytes);
-        return new String(bytes, StandardCharsets.UTF_8);
+    public long readLong() {
+        ensureReadable(8);
+        long r = readLong(this.readOff);
+        this.readOff += 8;
+        return r;
     }
-    // UTF END
+    // Long END
 
-    // Enum START
+    // Byte START
 
     /**
-     * Write enum (ordinal) with specified offset
-     * @param e Source enum
+     * Write byte with specified offset
+     * @param src Source byte
      * @param off Target offset
      * @return This wrapper
      */
-    public WrappedByteBuffer writeEnum(Enum<?> e, int off) {
-        this.writeShort((short) e.ordinal(), off);
+    public WrappedByteBuffer writeByte(byte src, int off) {
+        this.src.put(off, src);
         return this;
     }
 
     /**
-     * Write enum (ordinal)
-     * @param e Source enum
+     * Write byte
+     * @param src Source byte
      * @return This wrapper
      */
-    public WrappedByteBuffer writeEnum(Enum<?> e) {
-        this.writeShort((short) e.ordinal());
+    public WrappedByteBuffer writeByte(byte src) {
+        ensureWritable(1);
+        writeByte(src, this.writeOff);
+        this.writeOff += 1;
         return this;
     }
 
     /**
-     * Read enum with specified offset
-     * @param type Enum type
+     * Read byte with specified offset
      * @param off Target offset
-     * @return Result enum
-     * @param <T> Enum type
+     * @return Result byte
      */
-    public <T extends Enum<T>> T readEnum(Class<T> type, int off) {
-        int index = this.readShort();
-        return type.getEnumConstants()[index];
+    public byte readByte(int off) {
+        return this.src.get(off);
     }
 
     /**
-     * Read enum
-     * @param type Enum type
-     * @return Result enum
-     * @param <T> Enum type
+     * Read byte
+     * @return Result byte
      */
-    public <T extends Enum<T>> T readEnum(Class<T> type) {
-        T e = readEnum(type, this.readOff);
+    public byte readByte() {
+        ensureReadable(1);
+        byte r = readByte(this.readOff);
+        this.readOff += 1;
+        return r;
+    }
+    // Byte END
+
+    // Boolean START
+
+    /**
+     * Write boolean with specified offset
+     * @param src Source boolean
+     * @param off Target offset
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeBoolean(boolean src, int off) {
+        this.src.put(off, (byte) (src ? 1 : 0));
+        return this;
+    }
+
+    /**
+     * Write boolean
+     * @param src Source boolean
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeBoolean(boolean src) {
+        ensureWritable(1);
+        writeBoolean(src, this.writeOff);
+        this.writeOff += 1;
+        return this;
+    }
+
+    /**
+     * Read boolean with specified offset
+     * @param off Target offset
+     * @return Result boolean
+     */
+    public boolean readBoolean(int off) {
+        return this.src.get(off) != 0;
+    }
+
+    /**
+     * Read boolean
+     * @return Result boolean
+     */
+    public boolean readBoolean() {
+        ensureReadable(1);
+        boolean r = readBoolean(this.readOff);
+        this.readOff += 1;
+        return r;
+    }
+    // Boolean END
+
+    // Char START
+
+    /**
+     * Write char with specified offset
+     * @param src Source char
+     * @param off Target offset
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeChar(char src, int off) {
+        CHAR.set(this.src, off, src);
+        return this;
+    }
+
+    /**
+     * Write char
+     * @param src Source char
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeChar(char src) {
+        ensureWritable(2);
+        writeChar(src, this.writeOff);
+        this.writeOff += 2;
+        return this;
+    }
+
+    /**
+     * Read char with specified offset
+     * @param off Target offset
+     * @return Result char
+     */
+    public char readChar(int off) {
+        return (char) CHAR.get(this.src, off);
+    }
+
+    /**
+     * Read char
+     * @return Result char
+     */
+    public char readChar() {
+        ensureReadable(2);
+        char r = readChar(this.readOff);
         this.readOff += 2;
-        return e;
+        return r;
     }
+    // Char END
+
+    // Float START
 
     /**
-     * Try to read enum
-     * @param type Enum type
-     * @return Result enum, or null if the type is not representing an enum class
-     * @param <T> Enum type
+     * Write float with specified offset
+     * @param src Source float
+     * @param off Target offset
+     * @return This wrapper
      */
-    public <T> T tryReadEnum(Class<T> type) {
-        try {
-            int index = this.readShort();
-            return type.getEnumConstants()[index];
-        } catch (NullPointerException ex) {
-            return null;
-        }
+    public WrappedByteBuffer writeFloat(float src, int off) {
+        FLOAT.set(this.src, off, src);
+        return this;
     }
-    // Enum END
 
     /**
-     * Reset reader offset
+     * Write float
+     * @param src Source float
+     * @return This wrapper
      */
-    public void resetReader() {
-        this.readOff = 0;
+    public WrappedByteBuffer writeFloat(float src) {
+        ensureWritable(4);
+        writeFloat(src, this.writeOff);
+        this.writeOff += 4;
+        return this;
     }
 
     /**
-     * @return Reader offset
+     * Read float with specified offset
+     * @param off Target offset
+     * @return Result float
      */
-    public int readerOffset() {
-        return this.readOff;
+    public float readFloat(int off) {
+        return (float) FLOAT.get(this.src, off);
     }
 
     /**
-     * Reset ByteBuffer position
+     * Read float
+     * @return Result float
      */
-    public void resetWriter() {
-        this.src.position(0);
+    public float readFloat() {
+        ensureReadable(4);
+        float r = readFloat(this.readOff);
+        this.readOff += 4;
+        return r;
     }
+    // Float END
+
+    // Double START
 
     /**
-     * @return ByteBuffer position
+     * Write double with specified offset
+     * @param src Source double
+     * @param off Target offset
+     * @return This wrapper
      */
-    public int writeOffset() {
-        return this.src.position();
+    public WrappedByteBuffer writeDouble(double src, int off) {
+        DOUBLE.set(this.src, off, src);
+        return this;
     }
 
-    public byte[] array() {
-        return this.src.array();
+    /**
+     * Write double
+     * @param src Source double
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeDouble(double src) {
+        ensureWritable(8);
+        writeDouble(src, this.writeOff);
+        this.writeOff += 8;
+        return this;
+    }
+
+    /**
+     * Read double with specified offset
+     * @param off Target offset
+     * @return Result double
+     */
+    public double readDouble(int off) {
+        return (double) DOUBLE.get(this.src, off);
+    }
+
+    /**
+     * Read double
+     * @return Result double
+     */
+    public double readDouble() {
+        ensureReadable(8);
+        double r = readDouble(this.readOff);
+        this.readOff += 8;
+        return r;
+    }
+    // Double END
+
+    // UUID START
+
+    /**
+     * Write UUID with specified offset, as two longs
+     * @param src Source UUID
+     * @param off Target offset
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeUuid(UUID src, int off) {
+        LONG.set(this.src, off, src.getMostSignificantBits());
+        LONG.set(this.src, off + 8, src.getLeastSignificantBits());
+        return this;
+    }
+
+    /**
+     * Write UUID, as two longs
+     * @param src Source UUID
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeUuid(UUID src) {
+        ensureWritable(16);
+        writeUuid(src, this.writeOff);
+        this.writeOff += 16;
+        return this;
+    }
+
+    /**
+     * Read UUID with specified offset
+     * @param off Target offset
+     * @return Result UUID
+     */
+    public UUID readUuid(int off) {
+        return new UUID((long) LONG.get(this.src, off), (long) LONG.get(this.src, off + 8));
+    }
+
+    /**
+     * Read UUID
+     * @return Result UUID
+     */
+    public UUID readUuid() {
+        ensureReadable(16);
+        UUID r = readUuid(this.readOff);
+        this.readOff += 16;
+        return r;
+    }
+    // UUID END
+
+    // Bulk START
+    /**
+     * Bulk write short array through ShortBuffer view
+     * @param src Source array
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeShorts(short[] src) {
+        int len = src.length * 2;
+        ensureWritable(len);
+        this.src.slice(this.writeOff, len).asShortBuffer().put(src);
+        this.writeOff += len;
+        return this;
+    }
+
+    /**
+     * Bulk read short array through ShortBuffer view, fills the whole target array
+     * @param dst Target array
+     */
+    public void readShorts(short[] dst) {
+        int len = dst.length * 2;
+        ensureReadable(len);
+        this.src.slice(this.readOff, len).asShortBuffer().get(dst);
+        this.readOff += len;
+    }
+
+    /**
+     * Bulk write char array through CharBuffer view
+     * @param src Source array
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeChars(char[] src) {
+        int len = src.length * 2;
+        ensureWritable(len);
+        this.src.slice(this.writeOff, len).asCharBuffer().put(src);
+        this.writeOff += len;
+        return this;
+    }
+
+    /**
+     * Bulk read char array through CharBuffer view, fills the whole target array
+     * @param dst Target array
+     */
+    public void readChars(char[] dst) {
+        int len = dst.length * 2;
+        ensureReadable(len);
+        this.src.slice(this.readOff, len).asCharBuffer().get(dst);
+        this.readOff += len;
+    }
+
+    /**
+     * Bulk write int array through IntBuffer view
+     * @param src Source array
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeInts(int[] src) {
+        int len = src.length * 4;
+        ensureWritable(len);
+        this.src.slice(this.writeOff, len).asIntBuffer().put(src);
+        this.writeOff += len;
+        return this;
+    }
+
+    /**
+     * Bulk read int array through IntBuffer view, fills the whole target array
+     * @param dst Target array
+     */
+    public void readInts(int[] dst) {
+        int len = dst.length * 4;
+        ensureReadable(len);
+        this.src.slice(this.readOff, len).asIntBuffer().get(dst);
+        this.readOff += len;
+    }
+
+    /**
+     * Bulk write long array through LongBuffer view
+     * @param src Source array
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeLongs(long[] src) {
+        int len = src.length * 8;
+        ensureWritable(len);
+        this.src.slice(this.writeOff, len).asLongBuffer().put(src);
+        this.writeOff += len;
+        return this;
+    }
+
+    /**
+     * Bulk read long array through LongBuffer view, fills the whole target array
+     * @param dst Target array
+     */
+    public void readLongs(long[] dst) {
+        int len = dst.length * 8;
+        ensureReadable(len);
+        this.src.slice(this.readOff, len).asLongBuffer().get(dst);
+        this.readOff += len;
+    }
+
+    /**
+     * Bulk write float array through FloatBuffer view
+     * @param src Source array
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeFloats(float[] src) {
+        int len = src.length * 4;
+        ensureWritable(len);
+        this.src.slice(this.writeOff, len).asFloatBuffer().put(src);
+        this.writeOff += len;
+        return this;
+    }
+
+    /**
+     * Bulk read float array through FloatBuffer view, fills the whole target array
+     * @param dst Target array
+     */
+    public void readFloats(float[] dst) {
+        int len = dst.length * 4;
+        ensureReadable(len);
+        this.src.slice(this.readOff, len).asFloatBuffer().get(dst);
+        this.readOff += len;
+    }
+
+    /**
+     * Bulk write double array through DoubleBuffer view
+     * @param src Source array
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeDoubles(double[] src) {
+        int len = src.length * 8;
+        ensureWritable(len);
+        this.src.slice(this.writeOff, len).asDoubleBuffer().put(src);
+        this.writeOff += len;
+        return this;
+    }
+
+    /**
+     * Bulk read double array through DoubleBuffer view, fills the whole target array
+     * @param dst Target array
+     */
+    public void readDoubles(double[] dst) {
+        int len = dst.length * 8;
+        ensureReadable(len);
+        this.src.slice(this.readOff, len).asDoubleBuffer().get(dst);
+        this.readOff += len;
+    }
+    // Bulk END
+
+    // VarInt START
+
+    /**
+     * Write unsigned LEB128 variable-length integer, 1 to 5 bytes
+     * @param src Source integer, negative values always take 5 bytes
+     * @return This wrapper
+     * @see #writeSignedVarInt(int)
+     */
+    public WrappedByteBuffer writeVarInt(int src) {
+        ensureWritable(5);
+        this.writeOff = putVarInt(src, this.writeOff);
+        return this;
+    }
+
+    /**
+     * Encode varint at offset, space must be ensured by caller
+     * @return End offset
+     */
+    private int putVarInt(int value, int off) {
+        while ((value & ~0x7F) != 0) {
+            this.src.put(off++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        this.src.put(off++, (byte) value);
+        return off;
+    }
+
+    /**
+     * Read unsigned LEB128 variable-length integer
+     * @return Result integer
+     * @throws SerializationException Malformed varint
+     */
+    public int readVarInt() {
+        if (this.writeOff - this.readOff < 5) return readVarIntSlow();
+        int off = this.readOff;
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = this.src.get(off++);
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                this.readOff = off;
+                return result;
+            }
+        }
+        throw new SerializationException("Malformed varint at %s".formatted(this.readOff));
+    }
+
+    /**
+     * Read varint byte by byte, for buffers without enough readable bytes for the fast path
+     */
+    private int readVarIntSlow() {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            ensureReadable(1);
+            byte b = this.src.get(this.readOff++);
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) return result;
+        }
+        throw new SerializationException("Malformed varint at %s".formatted(this.readOff - 5));
+    }
+
+    /**
+     * Write unsigned LEB128 variable-length long, 1 to 10 bytes
+     * @param src Source long, negative values always take 10 bytes
+     * @return This wrapper
+     * @see #writeSignedVarLong(long)
+     */
+    public WrappedByteBuffer writeVarLong(long src) {
+        ensureWritable(10);
+        int off = this.writeOff;
+        while ((src & ~0x7FL) != 0) {
+            this.src.put(off++, (byte) ((src & 0x7F) | 0x80));
+            src >>>= 7;
+        }
+        this.src.put(off++, (byte) src);
+        this.writeOff = off;
+        return this;
+    }
+
+    /**
+     * Read unsigned LEB128 variable-length long
+     * @return Result long
+     * @throws SerializationException Malformed varint
+     */
+    public long readVarLong() {
+        if (this.writeOff - this.readOff < 10) return readVarLongSlow();
+        int off = this.readOff;
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = this.src.get(off++);
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                this.readOff = off;
+                return result;
+            }
+        }
+        throw new SerializationException("Malformed varlong at %s".formatted(this.readOff));
+    }
+
+    /**
+     * Read varlong byte by byte, for buffers without enough readable bytes for the fast path
+     */
+    private long readVarLongSlow() {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            ensureReadable(1);
+            byte b = this.src.get(this.readOff++);
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return result;
+        }
+        throw new SerializationException("Malformed varlong at %s".formatted(this.readOff - 10));
+    }
+
+    /**
+     * Write zigzag encoded varint, small negative values stay short
+     * @param src Source integer
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeSignedVarInt(int src) {
+        return writeVarInt((src << 1) ^ (src >> 31));
+    }
+
+    /**
+     * Read zigzag encoded varint
+     * @return Result integer
+     */
+    public int readSignedVarInt() {
+        int n = readVarInt();
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    /**
+     * Write zigzag encoded varlong, small negative values stay short
+     * @param src Source long
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeSignedVarLong(long src) {
+        return writeVarLong((src << 1) ^ (src >> 63));
+    }
+
+    /**
+     * Read zigzag encoded varlong
+     * @return Result long
+     */
+    public long readSignedVarLong() {
+        long n = readVarLong();
+        return (n >>> 1) ^ -(n & 1);
+    }
+    // VarInt END
+
+    // UTF START
+    /**
+     * Write UTF-8 encoded string with specified offset
+     * @param src Source string
+     * @param off Target offset
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeUtf(String src, int off) {
+        int len = utfLength(src);
+        this.writeInt(len, off);
+        encodeUtf(src, off + 4);
+        return this;
+    }
+
+    /**
+     * Write UTF-8 encoded string
+     * <br>
+     * Characters are encoded straight into the backing buffer without intermediate byte[]
+     * @param src Source string
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeUtf(String src) {
+        int len = utfLength(src);
+        ensureWritable(4 + len);
+        INT.set(this.src, this.writeOff, len);
+        this.writeOff = encodeUtf(src, this.writeOff + 4);
+        return this;
+    }
+
+    /**
+     * Read UTF-8 encoded string with specified offset
+     * @param off Target offset
+     * @return Result string
+     */
+    public String readUtf(int off) {
+        return decodeUtf(off + 4, this.readInt(off));
+    }
+
+    /**
+     * Read UTF-8 encoded string
+     * @return Result string
+     * @see #setStringCache(Utf8StringCache)
+     */
+    public String readUtf() {
+        int len = this.readInt();
+        checkLength(len);
+        ensureReadable(len);
+        String r = decodeUtf(this.readOff, len);
+        this.readOff += len;
+        return r;
+    }
+
+    /**
+     * Write UTF-8 encoded string with varint length prefix
+     * @param src Source string
+     * @return This wrapper
+     * @see #writeVarInt(int)
+     */
+    public WrappedByteBuffer writeVarUtf(String src) {
+        int len = utfLength(src);
+        ensureWritable(5 + len);
+        this.writeOff = encodeUtf(src, putVarInt(len, this.writeOff));
+        return this;
+    }
+
+    /**
+     * Read UTF-8 encoded string with varint length prefix
+     * @return Result string
+     * @see #setStringCache(Utf8StringCache)
+     */
+    public String readVarUtf() {
+        int len = this.readVarInt();
+        checkLength(len);
+        ensureReadable(len);
+        String r = decodeUtf(this.readOff, len);
+        this.readOff += len;
+        return r;
+    }
+
+    /**
+     * Compute UTF-8 encoded length of string
+     * <br>
+     * Unpaired surrogates are counted as one byte, they are encoded as '?' like {@link String#getBytes(java.nio.charset.Charset)}
+     * @param s Source string
+     * @return Encoded length
+     */
+    public static int utfLength(String s) {
+        int len = s.length();
+        int n = len;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) {
+                n += 1;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    n += 2;
+                    i++;
+                }
+            } else {
+                n += 2;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Encode string at offset, space must be ensured by caller
+     * @return End offset
+     */
+    private int encodeUtf(String s, int off) {
+        ByteBuffer bb = this.src;
+        int len = s.length();
+        int i = 0;
+
+        // ASCII fast path
+        for (; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) break;
+            bb.put(off++, (byte) c);
+        }
+
+        for (; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bb.put(off++, (byte) c);
+            } else if (c < 0x800) {
+                bb.put(off++, (byte) (0xC0 | (c >> 6)));
+                bb.put(off++, (byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    bb.put(off++, (byte) (0xF0 | (cp >> 18)));
+                    bb.put(off++, (byte) (0x80 | ((cp >> 12) & 0x3F)));
+                    bb.put(off++, (byte) (0x80 | ((cp >> 6) & 0x3F)));
+                    bb.put(off++, (byte) (0x80 | (cp & 0x3F)));
+                } else {
+                    bb.put(off++, (byte) '?');
+                }
+            } else {
+                bb.put(off++, (byte) (0xE0 | (c >> 12)));
+                bb.put(off++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+                bb.put(off++, (byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        return off;
+    }
+
+    /**
+     * Decode string from offset, using string cache if present
+     */
+    private String decodeUtf(int off, int len) {
+        Utf8StringCache cache = this.stringCache;
+        if (cache != null) {
+            String cached = cache.lookup(this.src, off, len);
+            if (cached != null) return cached;
+        }
+
+        String r;
+        if (this.src.hasArray()) {
+            r = new String(this.src.array(), this.src.arrayOffset() + off, len, StandardCharsets.UTF_8);
+        } else {
+            r = decodeUtfDirect(off, len);
+        }
+
+        if (cache != null) cache.store(this.src, off, len, r);
+        return r;
+    }
+
+    /**
+     * Decode string from buffers without accessible array, with reusable char scratch
+     * <br>
+     * Malformed sequences are replaced with U+FFFD
+     */
+    private String decodeUtfDirect(int off, int len) {
+        ByteBuffer bb = this.src;
+        char[] chars = this.charScratch;
+        if (chars == null || chars.length < len) {
+            chars = new char[Math.max(len, 64)];
+            this.charScratch = chars;
+        }
+
+        int n = 0;
+        int end = off + len;
+        while (off < end) {
+            int b = bb.get(off++);
+            if (b >= 0) {
+                chars[n++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0 && off < end) {
+                chars[n++] = (char) (((b & 0x1F) << 6) | (bb.get(off++) & 0x3F));
+            } else if ((b & 0xF0) == 0xE0 && off + 1 < end) {
+                chars[n++] = (char) (((b & 0x0F) << 12) | ((bb.get(off) & 0x3F) << 6) | (bb.get(off + 1) & 0x3F));
+                off += 2;
+            } else if ((b & 0xF8) == 0xF0 && off + 2 < end) {
+                int cp = ((b & 0x07) << 18) | ((bb.get(off) & 0x3F) << 12) | ((bb.get(off + 1) & 0x3F) << 6) | (bb.get(off + 2) & 0x3F);
+                off += 3;
+                chars[n++] = Character.highSurrogate(cp);
+                chars[n++] = Character.lowSurrogate(cp);
+            } else {
+                chars[n++] = '\uFFFD';
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    /**
+     * Set cache for decoded strings, repeated values like player names are returned without allocation
+     * @param stringCache Cache, or null to disable
+     */
+    public void setStringCache(Utf8StringCache stringCache) {
+        this.stringCache = stringCache;
+    }
+
+    /**
+     * @return Cache for decoded strings, or null if disabled
+     */
+    public Utf8StringCache getStringCache() {
+        return stringCache;
+    }
+    // UTF END
+
+    // Enum START
+
+    /**
+     * Write enum (ordinal) with specified offset
+     * @param e Source enum
+     * @param off Target offset
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeEnum(Enum<?> e, int off) {
+        this.writeShort((short) e.ordinal(), off);
+        return this;
+    }
+
+    /**
+     * Write enum (ordinal)
+     * @param e Source enum
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeEnum(Enum<?> e) {
+        this.writeShort((short) e.ordinal());
+        return this;
+    }
+
+    /**
+     * Read enum with specified offset
+     * @param type Enum type
+     * @param off Target offset
+     * @return Result enum
+     * @param <T> Enum type
+     */
+    public <T extends Enum<T>> T readEnum(Class<T> type, int off) {
+        return type.cast(EnumTable.of(type).byOrdinal(this.readShort(off)));
+    }
+
+    /**
+     * Read enum
+     * @param type Enum type
+     * @return Result enum
+     * @param <T> Enum type
+     */
+    public <T extends Enum<T>> T readEnum(Class<T> type) {
+        ensureReadable(2);
+        T e = readEnum(type, this.readOff);
+        this.readOff += 2;
+        return e;
+    }
+
+    /**
+     * Try to read enum
+     * @param type Enum type
+     * @return Result enum, or null if the type is not representing an enum class
+     * @param <T> Enum type
+     */
+    public <T> T tryReadEnum(Class<T> type) {
+        int index = this.readShort();
+        EnumTable table = EnumTable.of(type);
+        return table == null ? null : type.cast(table.byOrdinal(index));
+    }
+
+    /**
+     * Write enum ordinal as varint
+     * @param e Source enum
+     * @return This wrapper
+     */
+    public WrappedByteBuffer writeVarEnum(Enum<?> e) {
+        return this.writeVarInt(e.ordinal());
+    }
+
+    /**
+     * Read enum from varint ordinal
+     * @param type Enum type
+     * @return Result enum
+     * @param <T> Enum type
+     */
+    public <T extends Enum<T>> T readVarEnum(Class<T> type) {
+        return type.cast(EnumTable.of(type).byOrdinal(this.readVarInt()));
+    }
+
+    /**
+     * Write enum with specified encoding
+     * @param e Source enum
+     * @param encoding Ordinal width, or name
+     * @return This wrapper
+     * @throws SerializationException Ordinal exceeds byte width
+     */
+    public WrappedByteBuffer writeEnum(Enum<?> e, EnumEncoding encoding) {
+        EnumTable.write(this, e, encoding);
+        return this;
+    }
+
+    /**
+     * Read enum written with specified encoding
+     * @param type Enum type
+     * @param encoding Ordinal width, or name
+     * @return Result enum
+     * @param <T> Enum type
+     * @throws SerializationException Ordinal out of range or unknown name
+     */
+    public <T extends Enum<T>> T readEnum(Class<T> type, EnumEncoding encoding) {
+        return type.cast(EnumTable.of(type).read(this, encoding));
+    }
+    // Enum END
+
+    /**
+     * Move reader offset forward
+     * @param len Length to skip
+     * @return This wrapper
+     */
+    public WrappedByteBuffer skip(int len) {
+        ensureReadable(len);
+        this.readOff += len;
+        return this;
+    }
+
+    /**
+     * Move readable bytes (from reader offset to writer offset) to the start, discarding read bytes
+     * @return This wrapper
+     */
+    public WrappedByteBuffer compact() {
+        int remaining = writeOff - readOff;
+        if (readOff > 0 && remaining > 0) src.put(0, src, readOff, remaining);
+        this.readOff = 0;
+        this.writeOff = remaining;
+        return this;
+    }
+
+    /**
+     * Reset reader offset
+     */
+    public void resetReader() {
+        this.readOff = 0;
+    }
+
+    /**
+     * @return Reader offset
+     */
+    public int readerOffset() {
+        return this.readOff;
+    }
+
+    /**
+     * Reset writer offset
+     */
+    public void resetWriter() {
+        this.writeOff = 0;
+    }
+
+    /**
+     * @return Writer offset
+     */
+    public int writeOffset() {
+        return this.writeOff;
+    }
+
+    /**
+     * @return Capacity of current backing buffer
+     */
+    public int capacity() {
+        return this.src.capacity();
+    }
+
+    /**
+     * @return If this buffer expands automatically
+     */
+    public boolean isGrowable() {
+        return growable;
+    }
+
+    /**
+     * @return If backed by direct or memory-mapped buffer
+     */
+    public boolean isDirect() {
+        return this.src.isDirect();
+    }
+
+    /**
+     * @return If backed by an accessible byte[]
+     * @see #array()
+     */
+    public boolean hasArray() {
+        return this.src.hasArray();
+    }
+
+    /**
+     * Get backing byte[] of heap buffers
+     * <br>
+     * The array covers whole capacity; use {@link #toByteArray()} for written bytes only
+     * @return Backing array
+     * @throws UnsupportedOperationException Buffer is direct or memory-mapped
+     * @see #hasArray()
+     */
+    public byte[] array() {
+        return this.src.array();
+    }
+
+    /**
+     * Copy written bytes (from 0 to writer offset) into a new byte[]
+     * @return Copied bytes
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[writeOff];
+        this.src.get(0, bytes);
+        return bytes;
+    }
+
+    /**
+     * Create a view of a region sharing content with this buffer
+     * <br>
+     * The view has its own cursors, with reader offset at 0 and writer offset at the end of region. Views are not growable
+     * @param off Region offset
+     * @param len Region length
+     * @return View
+     * @see #copy(int, int)
+     */
+    public WrappedByteBuffer slice(int off, int len) {
+        WrappedByteBuffer bb = new WrappedByteBuffer(this.src.slice(off, len));
+        bb.writeOff = len;
+        bb.stringCache = this.stringCache;
+        return bb;
+    }
+
+    /**
+     * Create a view of whole buffer sharing content with this buffer, with independent cursors starting at current offsets
+     * <br>
+     * Views are not growable, and stop sharing content with this buffer once this buffer expands
+     * @return View
+     */
+    public WrappedByteBuffer duplicate() {
+        return viewOf(this.src.duplicate());
+    }
+
+    /**
+     * Create a read-only view of whole buffer, with independent cursors starting at current offsets
+     * <br>
+     * Writes to the view throw {@link java.nio.ReadOnlyBufferException}
+     * @return Read-only view
+     * @see #duplicate()
+     */
+    public WrappedByteBuffer asReadOnly() {
+        return viewOf(this.src.asReadOnlyBuffer());
+    }
+
+    private WrappedByteBuffer viewOf(ByteBuffer buf) {
+        WrappedByteBuffer bb = new WrappedByteBuffer(buf);
+        bb.readOff = this.readOff;
+        bb.writeOff = this.writeOff;
+        bb.stringCache = this.stringCache;
+        return bb;
+    }
+
+    /**
+     * @return If this buffer is a read-only view
+     * @see #asReadOnly()
+     */
+    public boolean isReadOnly() {
+        return this.src.isReadOnly();
+    }
+
+    /**
+     * Copy a region into a new heap buffer, with writer offset at the end of copied bytes
+     * @param off Region offset
+     * @param len Region length
+     * @return Copied buffer
+     */
+    public WrappedByteBuffer copy(int off, int len) {
+        WrappedByteBuffer bb = new WrappedByteBuffer(len);
+        bb.src.put(0, this.src, off, len);
+        bb.writeOff = len;
+        return bb;
+    }
+
+    /**
+     * Write readable bytes (from reader offset to writer offset) to channel without intermediate copy
+     * <br>
+     * Stops when all bytes are written or the channel accepts no more bytes, reader offset is moved forward by written length
+     * @param channel Target channel
+     * @return Written length
+     * @throws IOException Error in WritableByteChannel.write
+     */
+    public int transferTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer view = this.src.slice(readOff, writeOff - readOff);
+        int total = 0;
+        while (view.hasRemaining()) {
+            int n = channel.write(view);
+            if (n <= 0) break;
+            total += n;
+        }
+        readOff += total;
+        return total;
+    }
+
+    /**
+     * Read bytes from channel directly into this buffer at writer offset
+     * <br>
+     * Performs a single read, writer offset is moved forward by read length
+     * @param channel Source channel
+     * @param maxLen Maximum length to read
+     * @return Read length, or -1 if the channel has reached end-of-stream
+     * @throws IOException Error in ReadableByteChannel.read
+     */
+    public int readFrom(ReadableByteChannel channel, int maxLen) throws IOException {
+        if (growable) {
+            ensureWritable(maxLen);
+        } else {
+            maxLen = Math.min(maxLen, src.capacity() - writeOff);
+        }
+
+        int n = channel.read(this.src.slice(writeOff, maxLen));
+        if (n > 0) writeOff += n;
+        return n;
+    }
+
+    /**
+     * Read bytes from channel until this buffer is full or end-of-stream
+     * @param channel Source channel
+     * @return Read length, or -1 if the channel has reached end-of-stream before any byte read
+     * @throws IOException Error in ReadableByteChannel.read
+     * @see #readFrom(ReadableByteChannel, int)
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        int total = 0;
+        while (writeOff < src.capacity()) {
+            int n = readFrom(channel, src.capacity() - writeOff);
+            if (n < 0) return total == 0 ? -1 : total;
+            if (n == 0) break;
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Force changes of memory-mapped buffer to storage, no-op for other buffers
+     * @see MappedByteBuffer#force()
+     */
+    public void force() {
+        if (this.src instanceof MappedByteBuffer mapped) mapped.force();
+    }
+
+    /**
+     * Return this buffer to the pool it was acquired from
+     * <br>
+     * This buffer must not be used after released
+     * @see WrappedByteBufferPool#acquire()
+     */
+    public void release() {
+        if (pool == null || released) return;
+        released = true;
+        pool.recycle(this);
     }
 }
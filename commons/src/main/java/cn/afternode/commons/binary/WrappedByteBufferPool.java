@@ -0,0 +1,99 @@
+package cn.afternode.commons.binary;
+
+import java.util.ArrayDeque;
+
+/**
+ * Thread-local pool of growable WrappedByteBuffers
+ * <br>
+ * Buffers are acquired with {@link #acquire()} and returned with {@link WrappedByteBuffer#release()}
+ */
+public class WrappedByteBufferPool {
+    /**
+     * Shared pool with 256 bytes initial size, 16 cached buffers per thread and 1 MiB max retained size
+     */
+    public static final WrappedByteBufferPool DEFAULT = new WrappedByteBufferPool(256, 16, 1 << 20);
+
+    private final int initialSize;
+    private final int maxCached;
+    private final int maxRetainedSize;
+    private final boolean direct;
+
+    private final ThreadLocal<ArrayDeque<WrappedByteBuffer>> cache = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * @param initialSize Initial size of newly created buffers
+     * @param maxCached Maximum buffers cached per thread
+     * @param maxRetainedSize Buffers expanded beyond this capacity are dropped instead of cached
+     */
+    public WrappedByteBufferPool(int initialSize, int maxCached, int maxRetainedSize) {
+        this(initialSize, maxCached, maxRetainedSize, false);
+    }
+
+    /**
+     * @param initialSize Initial size of newly created buffers
+     * @param maxCached Maximum buffers cached per thread
+     * @param maxRetainedSize Buffers expanded beyond this capacity are dropped instead of cached
+     * @param direct Create buffers with direct (off-heap) memory
+     */
+    public WrappedByteBufferPool(int initialSize, int maxCached, int maxRetainedSize, boolean direct) {
+        if (initialSize <= 0) throw new IllegalArgumentException("initialSize must be positive");
+        this.initialSize = initialSize;
+        this.maxCached = maxCached;
+        this.maxRetainedSize = maxRetainedSize;
+        this.direct = direct;
+    }
+
+    /**
+     * Take a cleared growable buffer from current thread's cache, or create one
+     * @return Buffer, should be released after use
+     * @see WrappedByteBuffer#release()
+     */
+    public WrappedByteBuffer acquire() {
+        WrappedByteBuffer bb = cache.get().pollFirst();
+        if (bb == null) {
+            bb = direct ? WrappedByteBuffer.direct(initialSize, true) : new WrappedByteBuffer(initialSize, true);
+            bb.pool = this;
+        }
+        bb.released = false;
+        return bb;
+    }
+
+    void recycle(WrappedByteBuffer bb) {
+        if (bb.capacity() > maxRetainedSize) return;
+
+        ArrayDeque<WrappedByteBuffer> local = cache.get();
+        if (local.size() >= maxCached) return;
+
+        bb.resetReader();
+        bb.resetWriter();
+        local.offerFirst(bb);
+    }
+
+    /**
+     * @return Initial size of newly created buffers
+     */
+    public int getInitialSize() {
+        return initialSize;
+    }
+
+    /**
+     * @return Maximum buffers cached per thread
+     */
+    public int getMaxCached() {
+        return maxCached;
+    }
+
+    /**
+     * @return Max capacity of buffers to keep
+     */
+    public int getMaxRetainedSize() {
+        return maxRetainedSize;
+    }
+
+    /**
+     * @return If buffers are created with direct memory
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+}
@@ -2,29 +2,41 @@ package cn.afternode.commons.localizations;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 /**
  * Language file with lazy-load
+ * <br>
+ * Safe for concurrent use. Loaded values and ignored keys are kept in concurrent collections,
+ * and concurrent misses of the same key wait for a single loader call.
+ * Keys not defined by their loaded source are added to ignoreKeys when autoIgnore is enabled, so repeated misses are cheap
  */
 public class LazyLoadLanguageFile implements ILocalizations {
-    private final Properties prop = new Properties();
+    private final Map<String, String> values = new ConcurrentHashMap<>();
     private final Function<String, Reader> loader;
+    private final Map<String, LocalizationTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * Keys being loaded, completed when their loader call finishes
+     */
+    private final Map<String, CompletableFuture<Void>> loading = new ConcurrentHashMap<>();
 
     /**
      * Ignored localization keys
      */
-    private final List<String> ignoreKeys = new ArrayList<>();
+    private final Set<String> ignoreKeys = ConcurrentHashMap.newKeySet();
 
     /**
      * Ignore non-existing keys in localizations if it's in ignoreKeys
      * @see LazyLoadLanguageFile#ignoreKeys
      */
-    private boolean autoIgnore = true;
+    private volatile boolean autoIgnore = true;
 
     /**
      * @param loader Language file loader
@@ -34,7 +46,7 @@ public class LazyLoadLanguageFile implements ILocalizations {
     }
 
     /**
-     * Get localizations from loaded prop
+     * Get localizations from loaded values
      * <br>
      * Load from loader if key not exists and not contains in ignore list (when autoIgnore enabled)
      * @param key Localization key
@@ -46,30 +58,80 @@ public class LazyLoadLanguageFile implements ILocalizations {
     public String get(String key) {
         if (autoIgnore && ignoreKeys.contains(key)) return key;
 
-        if (!prop.containsKey(key)) {
+        String value = values.get(key);
+        if (value != null) return value;
+
+        load(key);
+        return values.getOrDefault(key, key);
+    }
+
+    /**
+     * Call loader for key, or wait for the call already running in another thread
+     * <br>
+     * Calls are single-flight per requested key. The loader only receives the key and the source it picks is not known here,
+     * so misses of different keys in the same source may still load it concurrently
+     */
+    private void load(String key) {
+        CompletableFuture<Void> flight = new CompletableFuture<>();
+        CompletableFuture<Void> running = loading.putIfAbsent(key, flight);
+        if (running != null) {
             try {
-                Reader rd = loader.apply(key);
-                if (rd != null) {
+                running.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException rt) throw rt;
+                throw ex;
+            }
+            return;
+        }
+
+        try {
+            // Another flight may have loaded this key and finished between the miss and putIfAbsent
+            if (values.containsKey(key) || (autoIgnore && ignoreKeys.contains(key))) {
+                flight.complete(null);
+                return;
+            }
+
+            Reader rd = loader.apply(key);
+            if (rd != null) {
+                Properties prop = new Properties();
+                try (rd) {
                     prop.load(rd);
-                    rd.close();
-                } else {
-                    this.addIgnore(key);
                 }
-            } catch (IOException ex) {
-                throw new RuntimeException("Unable to load localizations by key %s".formatted(key), ex);
+                for (String name : prop.stringPropertyNames()) values.put(name, prop.getProperty(name));
             }
+            // Remember misses, so later lookups of the key don't load and parse the source again
+            if (!values.containsKey(key)) this.addIgnore(key);
+            flight.complete(null);
+        } catch (IOException ex) {
+            RuntimeException rt = new RuntimeException("Unable to load localizations by key %s".formatted(key), ex);
+            flight.completeExceptionally(rt);
+            throw rt;
+        } catch (RuntimeException | Error ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(key, flight);
         }
-
-        return prop.getProperty(key, key);
     }
 
+    /**
+     * Get localizations with placeholders applied by a cached {@link LocalizationTemplate}
+     * <br>
+     * Templates are cached only for keys resolved to a value
+     * @param key Localization key
+     * @param placeholders Placeholders
+     * @return Result
+     */
     @Override
     public String get(String key, Map<String, Object> placeholders) {
-        String result = get(key);
-        for (String k: placeholders.keySet()) {
-            result = result.replace("%" + k + "%", placeholders.get(k).toString());
+        // Not computed inside the map, as loading may wait for other threads
+        LocalizationTemplate template = templates.get(key);
+        if (template == null) {
+            template = LocalizationTemplate.compile(get(key));
+            // Missed keys render as the key itself, only cache resolved values so a later load is not hidden
+            if (values.containsKey(key)) templates.putIfAbsent(key, template);
         }
-        return result;
+        return template.render(placeholders);
     }
 
     /**
@@ -110,18 +172,20 @@ public class LazyLoadLanguageFile implements ILocalizations {
      * Remove key from ignoreKeys
      * @return If this ignoreKeys contained the specified element
      * @see #ignoreKeys
-     * @see List#remove(Object)
+     * @see Set#remove(Object)
      */
     public boolean removeIgnore(String key) {
+        templates.remove(key);
         return this.ignoreKeys.remove(key);
     }
 
     /**
      * Clear ignoreKeys
      * @see #ignoreKeys
-     * @see List#clear()
+     * @see Set#clear()
      */
     public void clearIgnore() {
         this.ignoreKeys.clear();
+        this.templates.clear();
     }
 }
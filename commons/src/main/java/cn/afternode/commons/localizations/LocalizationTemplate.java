@@ -0,0 +1,94 @@
+package cn.afternode.commons.localizations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Localized value parsed into literal segments and %name% placeholder slots
+ * <br>
+ * Rendering appends each segment once to a pre-sized StringBuilder, values are not scanned for placeholders again.
+ * Placeholder names are non-empty and contain no whitespace or %, other % characters are kept as literal
+ */
+public final class LocalizationTemplate {
+    private final String source;
+    private final String[] literals;
+    private final String[] names;
+    private final int literalLength;
+
+    private LocalizationTemplate(String source, String[] literals, String[] names) {
+        this.source = source;
+        this.literals = literals;
+        this.names = names;
+        int len = 0;
+        for (String literal : literals) len += literal.length();
+        this.literalLength = len;
+    }
+
+    /**
+     * Parse a localized value
+     * @param source Localized value
+     * @return Template
+     */
+    public static LocalizationTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+
+        int literalStart = 0;
+        int i = source.indexOf('%');
+        while (i >= 0) {
+            int end = i + 1;
+            while (end < source.length() && isNameChar(source.charAt(end))) end++;
+            if (end < source.length() && end > i + 1 && source.charAt(end) == '%') {
+                literals.add(source.substring(literalStart, i));
+                names.add(source.substring(i + 1, end));
+                literalStart = end + 1;
+                i = source.indexOf('%', literalStart);
+            } else {
+                i = source.indexOf('%', i + 1);
+            }
+        }
+        literals.add(source.substring(literalStart));
+
+        return new LocalizationTemplate(source, literals.toArray(new String[0]), names.toArray(new String[0]));
+    }
+
+    private static boolean isNameChar(char c) {
+        return c != '%' && !Character.isWhitespace(c);
+    }
+
+    /**
+     * Apply placeholders
+     * <br>
+     * Placeholders not in the map are kept as-is
+     * @param placeholders Values by placeholder name
+     * @return Result
+     */
+    public String render(Map<String, ?> placeholders) {
+        if (names.length == 0) return source;
+
+        StringBuilder sb = new StringBuilder(literalLength + names.length * 16);
+        for (int i = 0; i < names.length; i++) {
+            sb.append(literals[i]);
+            Object value = placeholders.get(names[i]);
+            if (value != null || placeholders.containsKey(names[i])) sb.append(value);
+            else sb.append('%').append(names[i]).append('%');
+        }
+        sb.append(literals[names.length]);
+        return sb.toString();
+    }
+
+    /**
+     * @return Source value
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return Placeholder names in order of appearance
+     */
+    public List<String> getPlaceholders() {
+        return List.of(names);
+    }
+}
@@ -5,6 +5,7 @@ import java.io.InputStream;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Localizations provider with properties format
@@ -14,6 +15,7 @@ import java.util.Properties;
 public class MultiLanguageLocalization implements ILocalizations {
     private final String prefix;
     private final Properties prop = new Properties();
+    private final Map<String, LocalizationTemplate> templates = new ConcurrentHashMap<>();
     private final ClassLoader loader;
 
     /**
@@ -58,6 +60,7 @@ public class MultiLanguageLocalization implements ILocalizations {
      */
     public void loadLocalizations(String id) throws IOException {
         prop.load(loader.getResourceAsStream("%s_%s.properties".formatted(prefix, id)));
+        templates.clear();
     }
 
     /**
@@ -65,6 +68,7 @@ public class MultiLanguageLocalization implements ILocalizations {
      */
     public void clear() {
         this.prop.clear();
+        this.templates.clear();
     }
 
     /**
@@ -81,12 +85,16 @@ public class MultiLanguageLocalization implements ILocalizations {
      * @param key Localization key
      * @param placeholders Placeholders
      * @return Result localizations with placeholders applied, or provided key if not found
+     * @see LocalizationTemplate
      */
     public String get(String key, Map<String, Object> placeholders) {
-        String get = get(key);
-        for (String k: placeholders.keySet()) {
-            get = get.replace("%" + get + "%", placeholders.get(k).toString());
+        LocalizationTemplate template = templates.get(key);
+        if (template == null) {
+            String value = prop.getProperty(key);
+            // Missed keys render as the key itself, only resolved values are cached so dynamic keys don't grow the cache
+            if (value == null) return LocalizationTemplate.compile(key).render(placeholders);
+            template = templates.computeIfAbsent(key, k -> LocalizationTemplate.compile(value));
         }
-        return get;
+        return template.render(placeholders);
     }
 }
@@ -6,12 +6,14 @@ import java.io.StringReader;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Simple localizations using properties file
  */
 public class SimpleLocalization implements ILocalizations {
     private final Properties prop = new Properties();
+    private final Map<String, LocalizationTemplate> templates = new ConcurrentHashMap<>();
 
     /**
      * Load localizations from resources
@@ -56,6 +58,7 @@ public class SimpleLocalization implements ILocalizations {
      */
     public void clear() {
         prop.clear();
+        templates.clear();
     }
 
     /**
@@ -63,6 +66,7 @@ public class SimpleLocalization implements ILocalizations {
      */
     public void put(String key, String value) {
         prop.put(key, value);
+        templates.remove(key);
     }
 
     @Override
@@ -72,10 +76,13 @@ public class SimpleLocalization implements ILocalizations {
 
     @Override
     public String get(String key, Map<String, Object> placeholders) {
-        String get = get(key);
-        for (String k: placeholders.keySet()) {
-            get = get.replace("%" + get + "%", placeholders.get(k).toString());
+        LocalizationTemplate template = templates.get(key);
+        if (template == null) {
+            String value = prop.getProperty(key);
+            // Missed keys render as the key itself, only resolved values are cached so dynamic keys don't grow the cache
+            if (value == null) return LocalizationTemplate.compile(key).render(placeholders);
+            template = templates.computeIfAbsent(key, k -> LocalizationTemplate.compile(value));
         }
-        return get;
+        return template.render(placeholders);
     }
 }
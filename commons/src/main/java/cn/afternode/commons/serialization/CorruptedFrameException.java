@@ -0,0 +1,10 @@
+package cn.afternode.commons.serialization;
+
+/**
+ * Frame failed length or checksum validation
+ */
+public class CorruptedFrameException extends SerializationException {
+    public CorruptedFrameException(String message) {
+        super(message);
+    }
+}
@@ -4,6 +4,9 @@ module afternode.commons.commons.main {
     exports cn.afternode.commons.serialization;
     exports cn.afternode.commons.library;
     exports cn.afternode.commons.localizations;
+    exports cn.afternode.commons.binary;
+
+    uses cn.afternode.commons.binary.BinaryCodec;
 
     requires jdk.unsupported;
 }
\ No newline at end of file
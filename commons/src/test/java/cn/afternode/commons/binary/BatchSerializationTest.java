@@ -0,0 +1,89 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchSerializationTest {
+    static List<BinarySerializerTest.Sample> samples(int count) {
+        List<BinarySerializerTest.Sample> samples = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BinarySerializerTest.Sample sample = BinarySerializerTest.sample();
+            sample.i = i;
+            sample.text = "record " + i;
+            samples.add(sample);
+        }
+        return samples;
+    }
+
+    static void assertSamples(List<BinarySerializerTest.Sample> expected, List<BinarySerializerTest.Sample> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) BinarySerializerTest.assertSample(expected.get(i), actual.get(i));
+    }
+
+    @Test
+    void roundTrip() {
+        BinarySerializer serializer = new BinarySerializer();
+        List<BinarySerializerTest.Sample> samples = samples(100);
+        WrappedByteBuffer bb = serializer.serializeAll(samples, new WrappedByteBuffer(256, true));
+
+        assertSamples(samples, serializer.deserializeAll(BinarySerializerTest.Sample.class, bb));
+        assertEquals(bb.writeOffset(), bb.readerOffset());
+    }
+
+    @Test
+    void roundTripCompact() {
+        BinarySerializer serializer = new BinarySerializer();
+        serializer.setCompact(true);
+        List<BinarySerializerTest.Sample> samples = samples(100);
+        WrappedByteBuffer bb = serializer.serializeAll(samples, new WrappedByteBuffer(256, true));
+
+        assertSamples(samples, serializer.deserializeAll(BinarySerializerTest.Sample.class, bb));
+    }
+
+    @Test
+    void parallelMatchesSequential() {
+        BinarySerializer serializer = new BinarySerializer();
+        List<BinarySerializerTest.Sample> samples = samples(4096);
+        WrappedByteBuffer sequential = serializer.serializeAll(samples, new WrappedByteBuffer(256, true), false);
+        WrappedByteBuffer parallel = serializer.serializeAll(samples, new WrappedByteBuffer(256, true), true);
+
+        assertEquals(sequential.view(0, sequential.writeOffset()), parallel.view(0, parallel.writeOffset()));
+        assertSamples(samples, serializer.deserializeAll(BinarySerializerTest.Sample.class, parallel));
+    }
+
+    @Test
+    void empty() {
+        BinarySerializer serializer = new BinarySerializer();
+        WrappedByteBuffer bb = serializer.serializeAll(List.of(), new WrappedByteBuffer(16, true));
+        assertTrue(serializer.deserializeAll(BinarySerializerTest.Sample.class, bb).isEmpty());
+    }
+
+    @Test
+    void rejectMixedTypes() {
+        BinarySerializer serializer = new BinarySerializer();
+        List<Object> objs = List.of(BinarySerializerTest.sample(), new BinarySerializerTest.Holder());
+        assertThrows(IllegalArgumentException.class, () -> serializer.serializeAll(objs, new WrappedByteBuffer(256, true)));
+    }
+
+    @Test
+    void hostileCount() {
+        BinarySerializer serializer = new BinarySerializer();
+        WrappedByteBuffer bb = serializer.serializeAll(samples(2), new WrappedByteBuffer(256, true));
+        bb.writeInt(Integer.MAX_VALUE, 0);
+        assertThrows(SerializationException.class, () -> serializer.deserializeAll(BinarySerializerTest.Sample.class, bb));
+    }
+
+    @Test
+    void mismatchedRecordLength() {
+        BinarySerializer serializer = new BinarySerializer();
+        WrappedByteBuffer bb = serializer.serializeAll(samples(2), new WrappedByteBuffer(256, true));
+        // Count, version, then length of first record
+        bb.writeInt(bb.readInt(6) - 1, 6);
+        assertThrows(SerializationException.class, () -> serializer.deserializeAll(BinarySerializerTest.Sample.class, bb));
+    }
+}
@@ -0,0 +1,138 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.CorruptedFrameException;
+import cn.afternode.commons.serialization.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCompressionTest {
+    static byte[] compressible(int len) {
+        byte[] data = new byte[len];
+        for (int i = 0; i < len; i++) data[i] = (byte) "abcabcabd".charAt(i % 9);
+        return data;
+    }
+
+    static byte[] bytes(WrappedByteBuffer bb) {
+        ByteBuffer view = bb.view(bb.readerOffset(), bb.writeOffset() - bb.readerOffset());
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        return bytes;
+    }
+
+    static WrappedByteBuffer frame(BinaryCompression compression, byte[] data) {
+        WrappedByteBuffer dst = new WrappedByteBuffer(64, true);
+        compression.compress(new WrappedByteBuffer(data.length, true).writeBytes(data), dst);
+        return dst;
+    }
+
+    static byte[] decompress(BinaryCompression compression, WrappedByteBuffer src) {
+        WrappedByteBuffer dst = new WrappedByteBuffer(64, true);
+        compression.decompress(src, dst);
+        return bytes(dst);
+    }
+
+    static WrappedByteBuffer truncated(WrappedByteBuffer frame, int drop) {
+        byte[] bytes = bytes(frame);
+        return new WrappedByteBuffer(bytes.length - drop, false).writeBytes(bytes, 0, bytes.length - drop);
+    }
+
+    @Test
+    void roundTripCompressed() {
+        BinaryCompression compression = new BinaryCompression();
+        byte[] data = compressible(10_000);
+        WrappedByteBuffer frame = frame(compression, data);
+
+        assertEquals((byte) 1, frame.readByte(0));
+        assertTrue(frame.writeOffset() < data.length / 4);
+        assertArrayEquals(data, decompress(compression, frame));
+        assertEquals(frame.writeOffset(), frame.readerOffset());
+    }
+
+    @Test
+    void rawBelowThreshold() {
+        BinaryCompression compression = new BinaryCompression();
+        byte[] data = compressible(100);
+        WrappedByteBuffer frame = frame(compression, data);
+
+        assertEquals((byte) 0, frame.readByte(0));
+        assertArrayEquals(data, decompress(compression, frame));
+    }
+
+    @Test
+    void rawIfNotSmaller() {
+        BinaryCompression compression = new BinaryCompression();
+        byte[] data = new byte[4096];
+        new Random(1).nextBytes(data);
+        WrappedByteBuffer frame = frame(compression, data);
+
+        assertEquals((byte) 0, frame.readByte(0));
+        assertArrayEquals(data, decompress(compression, frame));
+    }
+
+    @Test
+    void serializerRoundTrip() {
+        BinarySerializer serializer = new BinarySerializer();
+        serializer.setCompression(new BinaryCompression(6, 0));
+        List<BinarySerializerTest.Sample> samples = BatchSerializationTest.samples(200);
+
+        BinarySerializerTest.Sample sample = samples.get(0);
+        BinarySerializerTest.assertSample(sample, serializer.deserialize(BinarySerializerTest.Sample.class, serializer.serialize(sample, 64)));
+
+        WrappedByteBuffer batch = serializer.serializeAll(samples, new WrappedByteBuffer(256, true));
+        assertEquals((byte) 1, batch.readByte(0));
+        BatchSerializationTest.assertSamples(samples, serializer.deserializeAll(BinarySerializerTest.Sample.class, batch));
+    }
+
+    @Test
+    void rawLengthOverMax() {
+        WrappedByteBuffer frame = frame(new BinaryCompression(1, 0), compressible(1000));
+        BinaryCompression strict = new BinaryCompression(1, 0, 999);
+        assertThrows(CorruptedFrameException.class, () -> decompress(strict, frame));
+    }
+
+    @Test
+    void hostileRawLength() {
+        // Raw frame claiming Integer.MAX_VALUE bytes, with nothing after it
+        WrappedByteBuffer frame = new WrappedByteBuffer(16, true);
+        frame.writeByte((byte) 0);
+        frame.writeVarInt(Integer.MAX_VALUE);
+        assertThrows(CorruptedFrameException.class, () -> decompress(new BinaryCompression(), frame));
+    }
+
+    @Test
+    void hostileCompressedLength() {
+        BinaryCompression compression = new BinaryCompression();
+        WrappedByteBuffer frame = frame(compression, compressible(10_000));
+        // Flag, 2-byte varint raw length, then compressed length
+        frame.writeInt(-1, 3);
+        assertThrows(CorruptedFrameException.class, () -> decompress(compression, frame));
+    }
+
+    @Test
+    void truncated() {
+        BinaryCompression compression = new BinaryCompression();
+        WrappedByteBuffer compressed = frame(compression, compressible(10_000));
+        WrappedByteBuffer raw = frame(compression, compressible(100));
+
+        assertThrows(SerializationException.class, () -> decompress(compression, truncated(compressed, 5)));
+        assertThrows(SerializationException.class, () -> decompress(compression, truncated(raw, 5)));
+    }
+
+    @Test
+    void corrupted() {
+        BinaryCompression compression = new BinaryCompression();
+        WrappedByteBuffer frame = frame(compression, compressible(10_000));
+        // Overwrite Deflate data after the 7-byte header
+        for (int i = 7; i < frame.writeOffset(); i++) frame.writeByte((byte) 0xff, i);
+        assertThrows(SerializationException.class, () -> decompress(compression, frame));
+
+        WrappedByteBuffer unknown = frame(compression, compressible(10_000));
+        unknown.writeByte((byte) 9, 0);
+        assertThrows(SerializationException.class, () -> decompress(compression, unknown));
+    }
+}
@@ -0,0 +1,170 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.CorruptedFrameException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryFrameCodecTest {
+    static WrappedByteBuffer payload(String text) {
+        return new WrappedByteBuffer(64, true).writeBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String text(WrappedByteBuffer payload) {
+        byte[] bytes = new byte[payload.writeOffset() - payload.readerOffset()];
+        payload.readBytes(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static byte[] encodeAll(BinaryFrameCodec codec, List<String> texts) {
+        WrappedByteBuffer dst = new WrappedByteBuffer(64, true);
+        for (String text : texts) codec.encode(payload(text), dst);
+        return BinaryCompressionTest.bytes(dst);
+    }
+
+    static List<String> texts(int count) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < count; i++) texts.add("frame %s %s".formatted(i, "x".repeat(i * 37 % 500)));
+        return texts;
+    }
+
+    @Test
+    void roundTrip() {
+        BinaryFrameCodec codec = new BinaryFrameCodec();
+        WrappedByteBuffer dst = new WrappedByteBuffer(64, true);
+        codec.encode(payload("first"), dst);
+        codec.encode(payload(""), dst);
+        codec.encode(payload("third"), dst);
+
+        assertEquals("first", text(codec.decode(dst)));
+        assertEquals("", text(codec.decode(dst)));
+        assertEquals("third", text(codec.decode(dst)));
+        assertEquals(dst.writeOffset(), dst.readerOffset());
+    }
+
+    @Test
+    void versionMismatch() {
+        BinaryFrameCodec v1 = new BinaryFrameCodec((short) 1, BinaryFrameCodec.DEFAULT_MAX_LENGTH);
+        BinaryFrameCodec v2 = new BinaryFrameCodec((short) 2, BinaryFrameCodec.DEFAULT_MAX_LENGTH);
+        WrappedByteBuffer dst = v1.encode(payload("hello"), new WrappedByteBuffer(64, true));
+
+        assertThrows(CorruptedFrameException.class, () -> v2.decode(dst));
+        // Rejected header is not consumed, so the frame can be dispatched by version
+        assertEquals(0, dst.readerOffset());
+        assertEquals((short) 1, BinaryFrameCodec.peekVersion(dst));
+        assertEquals("hello", text(v1.decode(dst)));
+    }
+
+    @Test
+    void checksumMismatch() {
+        BinaryFrameCodec codec = new BinaryFrameCodec();
+        WrappedByteBuffer dst = codec.encode(payload("hello"), new WrappedByteBuffer(64, true));
+        dst.writeByte((byte) 'j', BinaryFrameCodec.HEADER_SIZE);
+        assertThrows(CorruptedFrameException.class, () -> codec.decode(dst));
+    }
+
+    @Test
+    void badLength() {
+        BinaryFrameCodec codec = new BinaryFrameCodec((short) 1, 16);
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(payload("x".repeat(17)), new WrappedByteBuffer(64, true)));
+
+        WrappedByteBuffer dst = codec.encode(payload("hello"), new WrappedByteBuffer(64, true));
+        dst.writeInt(-1, 0);
+        assertThrows(CorruptedFrameException.class, () -> codec.decode(dst));
+        dst.writeInt(17, 0);
+        assertThrows(CorruptedFrameException.class, () -> codec.decode(dst));
+    }
+
+    @Test
+    void decoderPartialFeeds() {
+        BinaryFrameCodec codec = new BinaryFrameCodec();
+        List<String> texts = texts(50);
+        byte[] data = encodeAll(codec, texts);
+
+        // Initial buffer is smaller than most frames, so it has to expand
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder(codec, 16, false);
+        List<String> result = new ArrayList<>();
+        for (int off = 0; off < data.length; off += 7) {
+            decoder.feed(ByteBuffer.wrap(data, off, Math.min(7, data.length - off)));
+            WrappedByteBuffer payload;
+            while ((payload = decoder.next()) != null) result.add(text(payload));
+        }
+        assertEquals(texts, result);
+        assertEquals(0, decoder.buffered());
+    }
+
+    @Test
+    void decoderReadFromChannel() throws IOException {
+        BinaryFrameCodec codec = new BinaryFrameCodec();
+        List<String> texts = texts(50);
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(encodeAll(codec, texts)));
+
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder(codec, 64, true);
+        List<String> result = new ArrayList<>();
+        while (decoder.readFrom(channel) >= 0) {
+            WrappedByteBuffer payload;
+            while ((payload = decoder.next()) != null) result.add(text(payload));
+        }
+        assertEquals(texts, result);
+    }
+
+    @Test
+    void decoderTruncated() {
+        BinaryFrameCodec codec = new BinaryFrameCodec();
+        byte[] data = encodeAll(codec, List.of("first", "second"));
+
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder(codec);
+        decoder.feed(ByteBuffer.wrap(data, 0, data.length - 3));
+        assertEquals("first", text(decoder.next()));
+        assertNull(decoder.next());
+        assertEquals(BinaryFrameCodec.HEADER_SIZE + 3, decoder.buffered());
+    }
+
+    @Test
+    void decoderCorrupted() {
+        BinaryFrameCodec codec = new BinaryFrameCodec();
+        byte[] data = encodeAll(codec, List.of("first", "second"));
+        data[data.length - 1] ^= 1;
+
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder(codec);
+        decoder.feed(ByteBuffer.wrap(data));
+        assertEquals("first", text(decoder.next()));
+        assertThrows(CorruptedFrameException.class, decoder::next);
+    }
+
+    @Test
+    void decoderHostileLength() {
+        BinaryFrameCodec codec = new BinaryFrameCodec((short) 1, 1024);
+        WrappedByteBuffer header = new WrappedByteBuffer(BinaryFrameCodec.HEADER_SIZE, false);
+        header.writeInt(Integer.MAX_VALUE);
+        header.writeShort((short) 1);
+        header.writeInt(0);
+
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder(codec);
+        decoder.feed(header.view(0, header.writeOffset()));
+        assertThrows(CorruptedFrameException.class, decoder::next);
+        // Buffer is not expanded for the claimed length
+        assertThrows(CorruptedFrameException.class, () -> decoder.feed(ByteBuffer.allocate(1)));
+    }
+
+    @Test
+    void decoderVersionMismatch() {
+        BinaryFrameCodec v1 = new BinaryFrameCodec((short) 1, BinaryFrameCodec.DEFAULT_MAX_LENGTH);
+        BinaryFrameCodec v2 = new BinaryFrameCodec((short) 2, BinaryFrameCodec.DEFAULT_MAX_LENGTH);
+        byte[] data = encodeAll(v1, List.of("hello"));
+
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder(v2);
+        decoder.feed(ByteBuffer.wrap(data));
+        assertThrows(CorruptedFrameException.class, decoder::next);
+        assertEquals(data.length, decoder.buffered());
+    }
+}
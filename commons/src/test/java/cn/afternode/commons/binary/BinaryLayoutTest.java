@@ -0,0 +1,100 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryLayoutTest {
+    @BinarySerialize(version = 2, fixedLayout = true)
+    static class Player {
+        String name;
+        int rank;
+        List<String> titles;
+        long score;
+        boolean online;
+    }
+
+    @BinarySerialize
+    static class Declared {
+        String name;
+        int rank;
+    }
+
+    @BinarySerialize(tagged = true, fixedLayout = true)
+    static class TaggedFixed {
+        int rank;
+    }
+
+    static Player player() {
+        Player player = new Player();
+        player.name = "Alex";
+        player.rank = 3;
+        player.titles = List.of("first", "second");
+        player.score = 1_000_000L;
+        player.online = true;
+        return player;
+    }
+
+    @Test
+    void slotsOfAllPrimitives() {
+        BinaryLayout layout = BinaryLayout.of(Player.class);
+        assertEquals(List.of("rank", "score", "online"), List.copyOf(layout.slots().keySet()));
+        assertEquals(BinaryLayout.HEADER_SIZE, layout.slot("rank").getOffset());
+        assertEquals(BinaryLayout.HEADER_SIZE + 4, layout.slot("score").getOffset());
+        assertEquals(BinaryLayout.HEADER_SIZE + 13, layout.getFixedSize());
+        assertThrows(IllegalArgumentException.class, () -> layout.slot("name"));
+    }
+
+    @Test
+    void readAndWriteInPlace() {
+        BinarySerializer serializer = new BinarySerializer();
+        WrappedByteBuffer bb = new WrappedByteBuffer(64, true);
+        bb.writeLong(0);
+        int off = bb.writeOffset();
+        serializer.serialize(player(), bb);
+
+        BinaryLayout layout = BinaryLayout.of(Player.class);
+        layout.check(bb, off);
+        BinaryLayout.Slot rank = layout.slot("rank");
+        BinaryLayout.Slot score = layout.slot("score");
+        assertEquals(3, rank.getInt(bb, off));
+        assertEquals(1_000_000L, score.getLong(bb, off));
+        assertTrue(layout.slot("online").getBoolean(bb, off));
+
+        rank.setInt(bb, off, 7);
+        score.setLong(bb, off, 42L);
+        assertThrows(IllegalStateException.class, () -> rank.getLong(bb, off));
+
+        bb.skip(off);
+        Player result = serializer.deserialize(Player.class, bb);
+        assertEquals(7, result.rank);
+        assertEquals(42L, result.score);
+        assertEquals("Alex", result.name);
+        assertEquals(List.of("first", "second"), result.titles);
+    }
+
+    @Test
+    void check() {
+        BinarySerializer serializer = new BinarySerializer();
+        WrappedByteBuffer bb = serializer.serialize(player(), 64);
+        BinaryLayout layout = BinaryLayout.of(Player.class);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> layout.check(bb, bb.writeOffset() - 4));
+        bb.writeShort((short) 1, 0);
+        assertThrows(IllegalArgumentException.class, () -> layout.check(bb, 0));
+    }
+
+    @Test
+    void rejectPrimitiveAfterVariableWidth() {
+        assertThrows(SerializationException.class, () -> BinaryLayout.of(Declared.class));
+    }
+
+    @Test
+    void rejectOtherFormats() {
+        assertThrows(SerializationException.class, () -> BinaryLayout.of(TaggedFormatTest.V1.class));
+        assertThrows(SerializationException.class, () -> BinaryLayout.of(TaggedFixed.class));
+    }
+}
@@ -0,0 +1,271 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.CorruptedFrameException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryLogTest {
+    @BinarySerialize
+    static class Value {
+        int number;
+        String text;
+
+        Value() {}
+
+        Value(int number) {
+            this.number = number;
+            this.text = "value " + number;
+        }
+    }
+
+    @TempDir
+    Path directory;
+
+    BinaryLog open() throws IOException {
+        return new BinaryLog(directory, new BinarySerializer(), 512, 4);
+    }
+
+    List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix)).sorted().toList();
+        }
+    }
+
+    @Test
+    void appendAndLoad() throws IOException {
+        try (BinaryLog log = open()) {
+            for (int i = 0; i < 100; i++) assertEquals(i, log.append("key " + i % 10, new Value(i)));
+            log.delete("key 3");
+
+            Map<String, Value> values = log.load(Value.class);
+            assertEquals(9, values.size());
+            assertEquals(99, values.get("key 9").number);
+            assertEquals("value 90", values.get("key 0").text);
+            assertNull(values.get("key 3"));
+            assertTrue(files(".log").size() > 1, "segments are not rolled");
+        }
+    }
+
+    @Test
+    void rejectNullValue() throws IOException {
+        try (BinaryLog log = open()) {
+            assertThrows(NullPointerException.class, () -> log.append("key", null));
+            assertEquals(0, log.nextSequence());
+        }
+    }
+
+    @Test
+    void reopen() throws IOException {
+        try (BinaryLog log = open()) {
+            for (int i = 0; i < 100; i++) log.append("key " + i % 10, new Value(i));
+        }
+        try (BinaryLog log = open()) {
+            assertEquals(100, log.nextSequence());
+            assertEquals(99, log.durableSequence());
+            assertEquals(10, log.load(Value.class).size());
+            assertEquals(100, log.append("key 0", new Value(100)));
+        }
+    }
+
+    @Test
+    void replayFrom() throws IOException {
+        try (BinaryLog log = open()) {
+            for (int i = 0; i < 200; i++) log.append("key " + i, new Value(i));
+
+            List<Long> sequences = new ArrayList<>();
+            log.replay(150, (seq, key, data) -> sequences.add(seq));
+            assertEquals(50, sequences.size());
+            for (int i = 0; i < sequences.size(); i++) assertEquals(150L + i, (long) sequences.get(i));
+        }
+    }
+
+    @Test
+    void sync() throws IOException {
+        try (BinaryLog log = open()) {
+            long seq = log.append("key", new Value(1));
+            log.sync(seq);
+            assertTrue(log.durableSequence() >= seq);
+        }
+    }
+
+    @Test
+    void recoverTruncatedTail() throws IOException {
+        try (BinaryLog log = open()) {
+            for (int i = 0; i < 50; i++) log.append("key " + i, new Value(i));
+        }
+        // Torn write of the last record
+        Path last = files(".log").get(files(".log").size() - 1);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (BinaryLog log = open()) {
+            assertEquals(49, log.nextSequence());
+            Map<String, Value> values = log.load(Value.class);
+            assertEquals(49, values.size());
+            assertNull(values.get("key 49"));
+            log.append("key 49", new Value(49));
+        }
+        try (BinaryLog log = open()) {
+            assertEquals(49, log.load(Value.class).get("key 49").number);
+        }
+    }
+
+    @Test
+    void recoverCorruptedTail() throws IOException {
+        try (BinaryLog log = open()) {
+            for (int i = 0; i < 50; i++) log.append("key " + i, new Value(i));
+        }
+        Path last = files(".log").get(files(".log").size() - 1);
+        long size = Files.size(last);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12}), size);
+        }
+
+        try (BinaryLog log = open()) {
+            assertEquals(50, log.nextSequence());
+            assertEquals(size, Files.size(last));
+        }
+    }
+
+    @Test
+    void rejectCorruptionBeforeTail() throws IOException {
+        try (BinaryLog log = open()) {
+            for (int i = 0; i < 50; i++) log.append("key " + i, new Value(i));
+        }
+        Path first = files(".log").get(0);
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xff}), BinaryFrameCodec.HEADER_SIZE);
+        }
+        assertThrows(CorruptedFrameException.class, this::open);
+    }
+
+    @Test
+    void snapshot() throws IOException {
+        try (BinaryLog log = open()) {
+            for (int i = 0; i < 100; i++) log.append("key " + i % 10, new Value(i));
+            log.delete("key 0");
+
+            assertEquals(9, log.snapshot());
+            assertEquals(1, files(".snap").size());
+            assertEquals(1, files(".log").size());
+            assertEquals(-1, log.snapshot());
+
+            log.append("key 0", new Value(200));
+            Map<String, Value> values = log.load(Value.class);
+            assertEquals(10, values.size());
+            assertEquals(99, values.get("key 9").number);
+            assertEquals(200, values.get("key 0").number);
+
+            // Replay from a sequence only covered by the snapshot
+            List<Long> sequences = new ArrayList<>();
+            log.replay(95, (seq, key, data) -> sequences.add(seq));
+            assertEquals(List.of(95L, 96L, 97L, 98L, 99L, 101L), sequences);
+
+            assertEquals(10, log.snapshot());
+            assertEquals(1, files(".snap").size());
+        }
+        try (BinaryLog log = open()) {
+            assertEquals(102, log.nextSequence());
+            assertEquals(200, log.load(Value.class).get("key 0").number);
+        }
+    }
+
+    @Test
+    void snapshotDuringReplay() throws Exception {
+        try (BinaryLog log = open()) {
+            for (int i = 0; i < 200; i++) log.append("key " + i % 10, new Value(i));
+
+            // Replay pauses after its first record, while a snapshot replaces the files it is reading
+            CountDownLatch paused = new CountDownLatch(1);
+            CountDownLatch resume = new CountDownLatch(1);
+            List<Long> sequences = new ArrayList<>();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            Thread replay = new Thread(() -> {
+                try {
+                    log.replay((seq, key, data) -> {
+                        sequences.add(seq);
+                        if (seq == 0) {
+                            paused.countDown();
+                            try {
+                                resume.await();
+                            } catch (InterruptedException ex) {
+                                throw new IOException(ex);
+                            }
+                        }
+                    });
+                } catch (Throwable th) {
+                    error.set(th);
+                }
+            });
+            replay.start();
+            assertTrue(paused.await(10, TimeUnit.SECONDS));
+
+            assertEquals(10, log.snapshot());
+            // Replaced segments are kept while the replay is running
+            assertTrue(files(".log").size() > 1);
+
+            resume.countDown();
+            replay.join(10_000);
+            assertNull(error.get());
+            assertEquals(200, sequences.size());
+            assertEquals(199L, (long) sequences.get(199));
+
+            assertEquals(1, files(".log").size());
+            assertEquals(10, log.load(Value.class).size());
+        }
+    }
+
+    @Test
+    void snapshotWithConcurrentAppends() throws Exception {
+        Map<String, Integer> expected = new ConcurrentHashMap<>();
+        try (BinaryLog log = open()) {
+            int threads = 4;
+            CountDownLatch done = new CountDownLatch(threads);
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 500; i++) {
+                            String key = "thread %s key %s".formatted(thread, i % 20);
+                            log.append(key, new Value(i));
+                            expected.put(key, i);
+                        }
+                    } catch (Throwable th) {
+                        error.set(th);
+                    } finally {
+                        done.countDown();
+                    }
+                }).start();
+            }
+            while (!done.await(1, TimeUnit.MILLISECONDS)) log.snapshot();
+            assertNull(error.get());
+
+            Map<String, Value> values = log.load(Value.class);
+            assertEquals(expected.size(), values.size());
+            expected.forEach((key, number) -> assertEquals((int) number, values.get(key).number, key));
+        }
+        try (BinaryLog log = open()) {
+            assertEquals(2000, log.nextSequence());
+            assertEquals(expected.size(), log.load(Value.class).size());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySerializerTest {
+    enum Kind { FIRST, SECOND, THIRD }
+
+    @BinarySerialize
+    static class Nested {
+        String name;
+        long value;
+    }
+
+    @BinarySerialize(version = 3)
+    static class Sample {
+        int i;
+        long l;
+        short s;
+        byte b;
+        char c;
+        boolean z;
+        float f;
+        double d;
+        Integer boxed;
+        String text;
+        Kind kind;
+        UUID id;
+        byte[] raw;
+        int[] ints;
+        String[] names;
+        List<String> list;
+        Map<String, Integer> map;
+        Nested nested;
+    }
+
+    @BinarySerialize
+    static class Holder {
+        int[] values;
+        List<String> names;
+    }
+
+    static Sample sample() {
+        Sample s = new Sample();
+        s.i = -123456;
+        s.l = Long.MIN_VALUE + 7;
+        s.s = (short) -2;
+        s.b = (byte) 0x7f;
+        s.c = '中';
+        s.z = true;
+        s.f = 1.5f;
+        s.d = -Math.PI;
+        s.boxed = 42;
+        s.text = "hello, 世界 😀";
+        s.kind = Kind.THIRD;
+        s.id = UUID.randomUUID();
+        s.raw = new byte[] {1, 2, 3};
+        s.ints = new int[] {Integer.MIN_VALUE, 0, Integer.MAX_VALUE};
+        s.names = new String[] {"a", null, "c"};
+        s.list = new ArrayList<>(List.of("x", "y"));
+        s.map = new HashMap<>(Map.of("one", 1, "two", 2));
+        s.nested = new Nested();
+        s.nested.name = "inner";
+        s.nested.value = 99;
+        return s;
+    }
+
+    static void assertSample(Sample expected, Sample actual) {
+        assertEquals(expected.i, actual.i);
+        assertEquals(expected.l, actual.l);
+        assertEquals(expected.s, actual.s);
+        assertEquals(expected.b, actual.b);
+        assertEquals(expected.c, actual.c);
+        assertEquals(expected.z, actual.z);
+        assertEquals(expected.f, actual.f);
+        assertEquals(expected.d, actual.d);
+        assertEquals(expected.boxed, actual.boxed);
+        assertEquals(expected.text, actual.text);
+        assertEquals(expected.kind, actual.kind);
+        assertEquals(expected.id, actual.id);
+        assertArrayEquals(expected.raw, actual.raw);
+        assertArrayEquals(expected.ints, actual.ints);
+        assertArrayEquals(expected.names, actual.names);
+        assertEquals(expected.list, actual.list);
+        assertEquals(expected.map, actual.map);
+        assertEquals(expected.nested.name, actual.nested.name);
+        assertEquals(expected.nested.value, actual.nested.value);
+    }
+
+    @Test
+    void roundTripFixed() {
+        BinarySerializer serializer = new BinarySerializer();
+        Sample source = sample();
+        WrappedByteBuffer bb = serializer.serialize(source, 64);
+
+        assertEquals((short) 3, bb.readShort(0));
+        assertSample(source, serializer.deserialize(Sample.class, bb));
+        assertEquals(bb.writeOffset(), bb.readerOffset());
+    }
+
+    @Test
+    void roundTripCompact() {
+        BinarySerializer serializer = new BinarySerializer();
+        serializer.setCompact(true);
+        Sample source = sample();
+        WrappedByteBuffer bb = serializer.serialize(source, 64);
+
+        assertSample(source, serializer.deserialize(Sample.class, bb));
+        assertTrue(bb.writeOffset() < new BinarySerializer().serialize(source, 64).writeOffset(), "compact is not smaller than fixed");
+    }
+
+    @Test
+    void nullReferences() {
+        BinarySerializer serializer = new BinarySerializer();
+        Sample source = sample();
+        source.list = null;
+        source.map = null;
+        source.nested = null;
+        Sample result = serializer.deserialize(Sample.class, serializer.serialize(source, 64));
+        assertNull(result.list);
+        assertNull(result.map);
+        assertNull(result.nested);
+    }
+
+    @Test
+    void versionMismatch() {
+        BinarySerializer serializer = new BinarySerializer();
+        WrappedByteBuffer bb = serializer.serialize(sample(), 64);
+        bb.writeShort((short) 2, 0);
+        assertThrows(IllegalArgumentException.class, () -> serializer.deserialize(Sample.class, bb));
+    }
+
+    @Test
+    void hostileArrayLength() {
+        BinarySerializer serializer = new BinarySerializer();
+        Holder holder = new Holder();
+        holder.values = new int[] {1, 2, 3};
+        WrappedByteBuffer bb = serializer.serialize(holder, 64);
+
+        // Length prefix of values is right before its 3 elements, followed by null marker of names
+        int off = bb.writeOffset() - 1 - 12 - 4;
+        assertEquals(3, bb.readInt(off));
+        bb.writeInt(Integer.MAX_VALUE, off);
+        assertThrows(SerializationException.class, () -> serializer.deserialize(Holder.class, bb));
+    }
+
+    @Test
+    void hostileCollectionLength() {
+        BinarySerializer serializer = new BinarySerializer();
+        Holder holder = new Holder();
+        holder.names = new ArrayList<>();
+        WrappedByteBuffer bb = serializer.serialize(holder, 64);
+
+        // Empty list ends with its length prefix
+        int off = bb.writeOffset() - 4;
+        assertEquals(0, bb.readInt(off));
+        bb.writeInt(Integer.MAX_VALUE, off);
+        assertThrows(SerializationException.class, () -> serializer.deserialize(Holder.class, bb));
+    }
+}
@@ -0,0 +1,82 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryStreamTest {
+    static byte[] write(BinarySerializer serializer, int bufferSize, Object... objs) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BinaryWriter writer = new BinaryWriter(serializer, out, bufferSize)) {
+            for (Object obj : objs) writer.write(obj);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        BinarySerializer serializer = new BinarySerializer();
+        List<BinarySerializerTest.Sample> samples = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            BinarySerializerTest.Sample sample = BinarySerializerTest.sample();
+            sample.i = i;
+            samples.add(sample);
+        }
+        // Buffers smaller than a record make the reader refill in the middle of fields
+        byte[] data = write(serializer, 64, samples.toArray());
+
+        try (BinaryReader reader = new BinaryReader(serializer, new ByteArrayInputStream(data), 32)) {
+            for (BinarySerializerTest.Sample sample : samples) {
+                assertTrue(reader.hasRemaining());
+                BinarySerializerTest.assertSample(sample, reader.read(BinarySerializerTest.Sample.class));
+            }
+            assertFalse(reader.hasRemaining());
+        }
+    }
+
+    @Test
+    void rejectCompression() {
+        BinarySerializer serializer = new BinarySerializer();
+        serializer.setCompression(new BinaryCompression());
+        BinaryWriter writer = new BinaryWriter(serializer, new ByteArrayOutputStream());
+        assertThrows(IllegalStateException.class, () -> writer.write(BinarySerializerTest.sample()));
+    }
+
+    @Test
+    void maxLength() throws IOException {
+        BinarySerializer serializer = new BinarySerializer();
+        BinarySerializerTest.Holder holder = new BinarySerializerTest.Holder();
+        holder.values = new int[256];
+        byte[] data = write(serializer, 64, holder);
+
+        try (BinaryReader reader = new BinaryReader(serializer, new ByteArrayInputStream(data))) {
+            reader.setMaxLength(512);
+            assertThrows(SerializationException.class, () -> reader.read(BinarySerializerTest.Holder.class));
+        }
+        try (BinaryReader reader = new BinaryReader(serializer, new ByteArrayInputStream(data))) {
+            reader.setMaxLength(1024);
+            assertEquals(256, reader.read(BinarySerializerTest.Holder.class).values.length);
+        }
+    }
+
+    @Test
+    void hostileLengthFromStream() throws IOException {
+        BinarySerializer serializer = new BinarySerializer();
+        BinarySerializerTest.Holder holder = new BinarySerializerTest.Holder();
+        holder.names = new ArrayList<>();
+        byte[] data = write(serializer, 64, holder);
+        // Empty list ends with its length prefix
+        data[data.length - 4] = 0x7f;
+
+        try (BinaryReader reader = new BinaryReader(serializer, new ByteArrayInputStream(data))) {
+            assertThrows(SerializationException.class, () -> reader.read(BinarySerializerTest.Holder.class));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarSerializationTest {
+    @BinarySerialize
+    static class Row {
+        int id;
+        long time;
+        boolean flag;
+        double score;
+        String name;
+        BinarySerializerTest.Kind kind;
+        Integer boxed;
+        UUID owner;
+    }
+
+    @BinarySerialize
+    static class NamedRow {
+        @BinarySerialize.EnumFormat(EnumEncoding.NAME)
+        BinarySerializerTest.Kind kind;
+    }
+
+    @BinarySerialize
+    static class Empty {}
+
+    static List<Row> rows(int count) {
+        UUID[] owners = {UUID.randomUUID(), UUID.randomUUID()};
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Row row = new Row();
+            row.id = i;
+            row.time = 1_700_000_000_000L + i * 50L;
+            row.flag = i % 3 == 0;
+            row.score = i / 4.0;
+            row.name = "name " + i % 5;
+            row.kind = BinarySerializerTest.Kind.values()[i % 3];
+            row.boxed = i % 7 == 0 ? null : i % 4;
+            row.owner = owners[i % 2];
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    void roundTrip() {
+        BinarySerializer serializer = new BinarySerializer();
+        List<Row> rows = rows(500);
+        WrappedByteBuffer bb = serializer.serializeColumnar(rows, new WrappedByteBuffer(256, true));
+
+        List<Row> result = serializer.deserializeColumnar(Row.class, bb);
+        assertEquals(rows.size(), result.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Row expected = rows.get(i), actual = result.get(i);
+            assertEquals(expected.id, actual.id);
+            assertEquals(expected.time, actual.time);
+            assertEquals(expected.flag, actual.flag);
+            assertEquals(expected.score, actual.score);
+            assertEquals(expected.name, actual.name);
+            assertEquals(expected.kind, actual.kind);
+            assertEquals(expected.boxed, actual.boxed);
+            assertEquals(expected.owner, actual.owner);
+        }
+        assertEquals(bb.writeOffset(), bb.readerOffset());
+    }
+
+    @Test
+    void selectedColumns() {
+        BinarySerializer serializer = new BinarySerializer();
+        List<Row> rows = rows(20);
+        WrappedByteBuffer bb = serializer.serializeColumnar(rows, new WrappedByteBuffer(256, true));
+
+        List<Row> result = serializer.deserializeColumnar(Row.class, bb, "time", "name");
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(rows.get(i).time, result.get(i).time);
+            assertEquals(rows.get(i).name, result.get(i).name);
+            assertEquals(0, result.get(i).id);
+            assertNull(result.get(i).owner);
+        }
+    }
+
+    @Test
+    void smallerThanBatch() {
+        BinarySerializer serializer = new BinarySerializer();
+        List<Row> rows = rows(500);
+        WrappedByteBuffer columnar = serializer.serializeColumnar(rows, new WrappedByteBuffer(256, true));
+        WrappedByteBuffer batch = serializer.serializeAll(rows, new WrappedByteBuffer(256, true));
+        assertTrue(columnar.writeOffset() < batch.writeOffset());
+    }
+
+    @Test
+    void rejectNestedFields() {
+        BinarySerializer serializer = new BinarySerializer();
+        List<BinarySerializerTest.Sample> samples = List.of(BinarySerializerTest.sample());
+        assertThrows(SerializationException.class, () -> serializer.serializeColumnar(samples, new WrappedByteBuffer(256, true)));
+    }
+
+    @Test
+    void negativeDictionaryIndex() {
+        BinarySerializer serializer = new BinarySerializer();
+        NamedRow row = new NamedRow();
+        row.kind = BinarySerializerTest.Kind.FIRST;
+        WrappedByteBuffer bb = serializer.serializeColumnar(List.of(row), new WrappedByteBuffer(64, true));
+
+        // Single row index is the last byte, replace it with varint -1 and extend the column length prefix after count, version and column count
+        bb.rewindWriter(bb.writeOffset() - 1);
+        bb.writeVarInt(-1);
+        bb.writeInt(bb.readInt(4) + 4, 4);
+        assertThrows(SerializationException.class, () -> serializer.deserializeColumnar(NamedRow.class, bb));
+    }
+
+    @Test
+    void hostileRowCount() {
+        BinarySerializer serializer = new BinarySerializer();
+        // Row count, version and column count of a type without fields
+        WrappedByteBuffer bb = new WrappedByteBuffer(16, true);
+        bb.writeVarInt(Integer.MAX_VALUE);
+        bb.writeShort((short) 0);
+        bb.writeVarInt(0);
+        assertThrows(SerializationException.class, () -> serializer.deserializeColumnar(Empty.class, bb));
+
+        List<Empty> rows = List.of(new Empty(), new Empty());
+        serializer.setMaxRows(1);
+        assertThrows(SerializationException.class, () -> serializer.deserializeColumnar(Empty.class, serializer.serializeColumnar(rows, new WrappedByteBuffer(16, true))));
+        serializer.setMaxRows(2);
+        assertEquals(2, serializer.deserializeColumnar(Empty.class, serializer.serializeColumnar(rows, new WrappedByteBuffer(16, true))).size());
+    }
+
+    @Test
+    void enumFormat() {
+        BinarySerializer serializer = new BinarySerializer();
+        NamedRow row = new NamedRow();
+        row.kind = BinarySerializerTest.Kind.SECOND;
+        WrappedByteBuffer bb = serializer.serializeColumnar(List.of(row), new WrappedByteBuffer(64, true));
+
+        // Names in dictionary keep the data readable after constants are reordered
+        ByteBuffer view = bb.view(0, bb.writeOffset());
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        assertTrue(new String(bytes, StandardCharsets.ISO_8859_1).contains("SECOND"), "enum is not encoded by name");
+        assertEquals(BinarySerializerTest.Kind.SECOND, serializer.deserializeColumnar(NamedRow.class, bb).get(0).kind);
+    }
+}
@@ -0,0 +1,141 @@
+package cn.afternode.commons.binary;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapRecordStoreTest {
+    @BinarySerialize
+    static class Record {
+        int score;
+        long updated;
+        String name;
+    }
+
+    @TempDir
+    Path directory;
+
+    static Record record(int score, String name) {
+        Record record = new Record();
+        record.score = score;
+        record.updated = score * 1000L;
+        record.name = name;
+        return record;
+    }
+
+    static long fileCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void putGetRemove() {
+        try (OffHeapRecordStore<Record> store = new OffHeapRecordStore<>(new BinarySerializer(), Record.class, 1024)) {
+            UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+            store.put(a, record(1, "a"));
+            store.put(b, record(2, "b"));
+            assertEquals(2, store.size());
+            assertEquals("a", store.get(a).name);
+            assertEquals(2, store.get(b).score);
+
+            store.put(a, record(3, "a2"));
+            assertEquals(2, store.size());
+            assertEquals("a2", store.get(a).name);
+
+            assertTrue(store.remove(a));
+            assertFalse(store.remove(a));
+            assertFalse(store.contains(a));
+            assertNull(store.get(a));
+            assertEquals(1, store.size());
+            assertNull(store.get(UUID.randomUUID()));
+        }
+    }
+
+    @Test
+    void manyRecords() {
+        try (OffHeapRecordStore<Record> store = new OffHeapRecordStore<>(new BinarySerializer(), Record.class, 4096)) {
+            // Enough keys to grow the index and span many slabs
+            List<UUID> keys = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                UUID key = UUID.randomUUID();
+                keys.add(key);
+                store.put(key, record(i, "record " + i));
+            }
+            assertEquals(keys.size(), store.size());
+            for (int i = 0; i < keys.size(); i++) assertEquals("record " + i, store.get(keys.get(i)).name);
+        }
+    }
+
+    @Test
+    void readInPlace() {
+        try (OffHeapRecordStore<Record> store = new OffHeapRecordStore<>(new BinarySerializer(), Record.class, 1024)) {
+            UUID key = UUID.randomUUID();
+            store.put(key, record(42, "layout"));
+
+            BinaryLayout.Slot score = BinaryLayout.of(Record.class).slot("score");
+            assertEquals(42, (int) store.read(key, bb -> score.getInt(bb, bb.readerOffset())));
+            assertNull(store.read(UUID.randomUUID(), bb -> 0));
+        }
+    }
+
+    @Test
+    void compact() {
+        try (OffHeapRecordStore<Record> store = new OffHeapRecordStore<>(new BinarySerializer(), Record.class, 1024)) {
+            List<UUID> keys = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                UUID key = UUID.randomUUID();
+                keys.add(key);
+                store.put(key, record(i, "record " + i));
+            }
+            long allocated = store.allocatedBytes();
+            for (int i = 0; i < keys.size(); i++) if (i % 10 != 0) store.remove(keys.get(i));
+
+            assertTrue(store.compact() > 0);
+            assertTrue(store.allocatedBytes() < allocated);
+            assertEquals(100, store.size());
+            for (int i = 0; i < keys.size(); i += 10) assertEquals("record " + i, store.get(keys.get(i)).name);
+            assertTrue(store.liveBytes() <= store.allocatedBytes());
+        }
+    }
+
+    @Test
+    void clearAndClose() {
+        OffHeapRecordStore<Record> store = new OffHeapRecordStore<>(new BinarySerializer(), Record.class, 1024);
+        UUID key = UUID.randomUUID();
+        store.put(key, record(1, "a"));
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, store.allocatedBytes());
+
+        store.close();
+        assertThrows(IllegalStateException.class, () -> store.put(key, record(1, "a")));
+        assertThrows(IllegalStateException.class, () -> store.get(key));
+        assertThrows(IllegalStateException.class, () -> store.contains(key));
+    }
+
+    @Test
+    void mappedSlabs() throws IOException {
+        // Files left by an earlier run must not collide with new slabs
+        Files.createFile(directory.resolve("slab-0.bin"));
+        UUID key = UUID.randomUUID();
+        try (OffHeapRecordStore<Record> first = new OffHeapRecordStore<>(new BinarySerializer(), Record.class, 1024, directory);
+             OffHeapRecordStore<Record> second = new OffHeapRecordStore<>(new BinarySerializer(), Record.class, 1024, directory)) {
+            first.put(key, record(1, "first"));
+            second.put(key, record(2, "second"));
+            assertEquals("first", first.get(key).name);
+            assertEquals("second", second.get(key).name);
+            assertEquals(3, fileCount(directory));
+        }
+        assertEquals(1, fileCount(directory));
+    }
+}
@@ -0,0 +1,137 @@
+package cn.afternode.commons.binary;
+
+import cn.afternode.commons.serialization.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaggedFormatTest {
+    @BinarySerialize(version = 1, tagged = true)
+    static class V1 {
+        @BinarySerialize.Tag(1)
+        int count;
+        @BinarySerialize.Tag(2)
+        String legacy;
+    }
+
+    @BinarySerialize(version = 2, tagged = true)
+    static class V2 {
+        @BinarySerialize.Tag(1)
+        int count;
+        @BinarySerialize.Tag(3)
+        String label;
+        @BinarySerialize.Tag(4)
+        int added = 5;
+    }
+
+    @BinarySerialize(version = 1, tagged = true)
+    static class ChangedType {
+        @BinarySerialize.Tag(1)
+        int count;
+        @BinarySerialize.Tag(2)
+        List<String> legacy;
+    }
+
+    @BinarySerialize(tagged = true)
+    static class LargeTag {
+        @BinarySerialize.Tag(BinarySchema.MAX_TAG)
+        int value;
+    }
+
+    @BinarySerialize(tagged = true)
+    static class OverflowTag {
+        @BinarySerialize.Tag(BinarySchema.MAX_TAG + 1)
+        int value;
+    }
+
+    @BinarySerialize(tagged = true)
+    static class MaxIntTag {
+        @BinarySerialize.Tag(Integer.MAX_VALUE)
+        int value;
+    }
+
+    static V1 v1() {
+        V1 v1 = new V1();
+        v1.count = 7;
+        v1.legacy = "old name";
+        return v1;
+    }
+
+    @Test
+    void roundTrip() {
+        BinarySerializer serializer = new BinarySerializer();
+        V2 source = new V2();
+        source.count = 3;
+        source.label = "label";
+        source.added = 11;
+
+        V2 result = serializer.deserialize(V2.class, serializer.serialize(source, 64));
+        assertEquals(3, result.count);
+        assertEquals("label", result.label);
+        assertEquals(11, result.added);
+    }
+
+    @Test
+    void upgradeOlderData() {
+        BinarySerializer serializer = new BinarySerializer();
+        serializer.registerUpgrade(V2.class, (short) 1, (obj, unknown) -> obj.label = unknown.get(2).readUtf());
+
+        V2 result = serializer.deserialize(V2.class, serializer.serialize(v1(), 64));
+        assertEquals(7, result.count);
+        assertEquals("old name", result.label);
+        assertEquals(5, result.added, "missing field does not keep its default");
+    }
+
+    @Test
+    void upgradesAppliedInOrder() {
+        BinarySerializer serializer = new BinarySerializer();
+        List<Short> applied = new ArrayList<>();
+        serializer.registerUpgrade(V2.class, (short) 1, (obj, unknown) -> applied.add((short) 1));
+        serializer.registerUpgrade(V2.class, (short) 0, (obj, unknown) -> applied.add((short) 0));
+        serializer.registerUpgrade(V2.class, (short) 2, (obj, unknown) -> applied.add((short) 2));
+
+        serializer.deserialize(V2.class, serializer.serialize(v1(), 64));
+        assertEquals(List.of((short) 1), applied);
+    }
+
+    @Test
+    void newerDataSkipsUnknownFields() {
+        BinarySerializer serializer = new BinarySerializer();
+        V2 source = new V2();
+        source.count = 9;
+        source.label = "new";
+        WrappedByteBuffer bb = serializer.serialize(source, 64);
+
+        V1 result = serializer.deserialize(V1.class, bb);
+        assertEquals(9, result.count);
+        assertNull(result.legacy);
+        assertEquals(bb.writeOffset(), bb.readerOffset());
+    }
+
+    @Test
+    void rejectUntaggedUpgrade() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new BinarySerializer().registerUpgrade(BinarySerializerTest.Nested.class, (short) 0, (obj, unknown) -> {}));
+    }
+
+    @Test
+    void tagRange() {
+        BinarySerializer serializer = new BinarySerializer();
+        LargeTag source = new LargeTag();
+        source.value = 5;
+        assertEquals(5, serializer.deserialize(LargeTag.class, serializer.serialize(source, 16)).value);
+
+        assertThrows(SerializationException.class, () -> serializer.serialize(new OverflowTag(), 16));
+        assertThrows(SerializationException.class, () -> serializer.serialize(new MaxIntTag(), 16));
+    }
+
+    @Test
+    void changedTypeOfSameWireType() {
+        BinarySerializer serializer = new BinarySerializer();
+        // String and List<String> are both length-delimited, the field must not be decoded past its length
+        assertThrows(SerializationException.class, () -> serializer.deserialize(ChangedType.class, serializer.serialize(v1(), 64)));
+    }
+}
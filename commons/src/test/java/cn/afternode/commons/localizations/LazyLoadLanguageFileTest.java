@@ -0,0 +1,132 @@
+package cn.afternode.commons.localizations;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyLoadLanguageFileTest {
+    @Test
+    void loadOnMiss() {
+        AtomicInteger calls = new AtomicInteger();
+        LazyLoadLanguageFile file = new LazyLoadLanguageFile(key -> {
+            calls.incrementAndGet();
+            return new StringReader("a=A\nb=B");
+        });
+
+        assertEquals("A", file.get("a"));
+        assertEquals("B", file.get("b"));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void ignoreMissingSource() {
+        AtomicInteger calls = new AtomicInteger();
+        LazyLoadLanguageFile file = new LazyLoadLanguageFile(key -> {
+            calls.incrementAndGet();
+            return null;
+        });
+
+        assertEquals("missing", file.get("missing"));
+        assertEquals("missing", file.get("missing"));
+        assertTrue(file.isIgnore("missing"));
+        assertEquals(1, calls.get());
+
+        file.removeIgnore("missing");
+        file.get("missing");
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void ignoreKeyMissingInSource() {
+        AtomicInteger calls = new AtomicInteger();
+        LazyLoadLanguageFile file = new LazyLoadLanguageFile(key -> {
+            calls.incrementAndGet();
+            return new StringReader("a=A");
+        });
+
+        assertEquals("missing", file.get("missing"));
+        assertEquals("missing", file.get("missing"));
+        assertTrue(file.isIgnore("missing"));
+        assertEquals(1, calls.get());
+        assertEquals("A", file.get("a"));
+    }
+
+    @Test
+    void concurrentGet() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LazyLoadLanguageFile file = new LazyLoadLanguageFile(key -> {
+            calls.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+            return new StringReader("a=A");
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) results.add(executor.submit(() -> file.get("a")));
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            // Give other threads time to miss and wait for the running load
+            Thread.sleep(50);
+            release.countDown();
+
+            for (Future<String> result : results) assertEquals("A", result.get(10, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void errorReachesWaiters() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        LazyLoadLanguageFile file = new LazyLoadLanguageFile(key -> {
+            if (calls.incrementAndGet() > 1) return new StringReader("a=A");
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+            throw new IllegalStateException("broken source");
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) results.add(executor.submit(() -> file.get("a")));
+            Thread.sleep(50);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                try {
+                    // Threads arriving after the failed flight start a new one
+                    assertEquals("A", result.get(10, TimeUnit.SECONDS));
+                } catch (ExecutionException ex) {
+                    assertTrue(ex.getCause() instanceof IllegalStateException);
+                }
+            }
+            // Failed flight is removed, so the key is loaded again
+            assertEquals("A", file.get("a"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
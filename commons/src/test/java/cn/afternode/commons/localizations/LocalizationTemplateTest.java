@@ -0,0 +1,69 @@
+package cn.afternode.commons.localizations;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalizationTemplateTest {
+    @Test
+    void render() {
+        LocalizationTemplate template = LocalizationTemplate.compile("Hello %name%, you have %count% messages");
+        assertEquals(List.of("name", "count"), template.getPlaceholders());
+        assertEquals("Hello Alex, you have 3 messages", template.render(Map.of("name", "Alex", "count", 3)));
+    }
+
+    @Test
+    void missingPlaceholders() {
+        assertEquals("1-%b%", LocalizationTemplate.compile("%a%-%b%").render(Map.of("a", 1)));
+    }
+
+    @Test
+    void literalPercent() {
+        assertEquals("50% off for VIP", LocalizationTemplate.compile("50% off for %rank%").render(Map.of("rank", "VIP")));
+        assertEquals("100%", LocalizationTemplate.compile("100%").render(Map.of()));
+        assertEquals("%% x", LocalizationTemplate.compile("%% %v%").render(Map.of("v", "x")));
+    }
+
+    @Test
+    void valuesNotRescanned() {
+        LocalizationTemplate template = LocalizationTemplate.compile("%a% %b%");
+        assertEquals("%b% 2", template.render(Map.of("a", "%b%", "b", 2)));
+    }
+
+    @Test
+    void noPlaceholders() {
+        String source = "plain text";
+        assertSame(source, LocalizationTemplate.compile(source).render(Map.of("x", 1)));
+    }
+
+    @Test
+    void simpleLocalization() {
+        SimpleLocalization localization = new SimpleLocalization(new HashMap<>(Map.of("greet", "Hi %name%")));
+        assertEquals("Hi Alex", localization.get("greet", Map.of("name", "Alex")));
+
+        localization.put("greet", "Bye %name%");
+        assertEquals("Bye Alex", localization.get("greet", Map.of("name", "Alex")));
+
+        // Missed keys are rendered without being cached
+        assertEquals("missing", localization.get("missing", Map.of("name", "Alex")));
+        localization.put("missing", "Found %name%");
+        assertEquals("Found Alex", localization.get("missing", Map.of("name", "Alex")));
+    }
+
+    @Test
+    void lazyLoadCachesOnlyResolvedKeys() {
+        boolean[] ready = {false};
+        LazyLoadLanguageFile file = new LazyLoadLanguageFile(key -> new StringReader(ready[0] ? "greet=Hi %name%" : ""));
+        file.setAutoIgnore(false);
+
+        assertEquals("greet", file.get("greet", Map.of("name", "Alex")));
+        // A value loaded after a miss is rendered
+        ready[0] = true;
+        assertEquals("Hi Alex", file.get("greet", Map.of("name", "Alex")));
+    }
+}